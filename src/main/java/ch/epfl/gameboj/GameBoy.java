@@ -34,6 +34,7 @@ public final class GameBoy {
     private final Joypad joypad;
     
     private long numberOfCycles = 0;
+    public boolean dbgSkip = true;
     
     /**
      * Creates a new gameboy, with a cartridge inserted
@@ -56,6 +57,8 @@ public final class GameBoy {
         apu = new APU();
         joypad = new Joypad(mCpu);
         
+        mCpu.setBanks(bootRom);
+        
         mCpu.attachTo(mBus);
         mTimer.attachTo(mBus);
         workRam.attachTo(mBus);
@@ -124,9 +127,59 @@ public final class GameBoy {
         Preconditions.checkArgument(cycle >= numberOfCycles);
         
         while(cycles() < cycle) {
-            mTimer.cycle(numberOfCycles);
-            lcd.cycle(numberOfCycles);
-            mCpu.cycle(numberOfCycles);
+            if (mCpu.isHalted()) {
+                skipUntil(Math.min(cycle, nextInterruptCycle()));
+            } else if (dbgSkip) {
+                skipPollingLoop(cycle);
+            }
+            
+            if (cycles() < cycle) {
+                mTimer.cycle(numberOfCycles);
+                lcd.cycle(numberOfCycles);
+                mCpu.cycle(numberOfCycles);
+                apu.cycle(numberOfCycles);
+                numberOfCycles++;
+            }
+        }
+    }
+    
+    /**
+     * @return the first cycle during which a component may raise an interrupt
+     */
+    private long nextInterruptCycle() {
+        return Math.min(mTimer.nextInterruptCycle(numberOfCycles), lcd.nextEventCycle(numberOfCycles));
+    }
+    
+    /**
+     * Skips the iterations of the polling loop the cpu is in that end before
+     * the given cycle and before another component may change what the loop reads
+     * @param cycle : the cycle up to which the gameboy runs
+     */
+    private void skipPollingLoop(long cycle) {
+        int loopCycles = mCpu.pollingLoopCycles(numberOfCycles);
+        if (loopCycles == 0) {
+            return;
+        }
+        
+        long iterations = (Math.min(cycle, nextInterruptCycle()) - numberOfCycles) / loopCycles;
+        if (iterations > 0) {
+            mCpu.skipPollingLoop(iterations);
+            skipUntil(numberOfCycles + iterations * loopCycles);
+        }
+    }
+    
+    /**
+     * Fast-forwards the gameboy to the given cycle, while the cpu is halted or
+     * polling. Only the sound is cycled, since nothing else happens before the next interrupt
+     * @param cycle : the cycle to stop at, before the next interrupt
+     */
+    private void skipUntil(long cycle) {
+        if (cycle <= numberOfCycles) {
+            return;
+        }
+        
+        mTimer.skip(cycle - numberOfCycles);
+        while (numberOfCycles < cycle) {
             apu.cycle(numberOfCycles);
             numberOfCycles++;
         }
@@ -0,0 +1,18 @@
+package ch.epfl.gameboj.component;
+
+/**
+ * Represents a component whose content at some addresses depends on a selected bank
+ * 
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+public interface Banked {
+    
+    /**
+     * Gives the bank currently mapped at given address. Two reads at the same
+     * address and in the same bank always give the same data
+     * @param address : 16-bit address
+     * @return the index of the bank, -1 if the address is not in a cartridge rom bank
+     */
+    int bankAt(int address);
+}
@@ -48,6 +48,63 @@ public final class Timer implements Component, Clocked {
         incIfChange(s0);
     }
 
+    /**
+     * Evolves the timer as if it had been cycled a given number of times, in
+     * constant time
+     * @param cycles : the number of cycles, positive or zero
+     * @throws IllegalArgumentException if cycles is negative
+     */
+    public void skip(long cycles) {
+        Preconditions.checkArgument(cycles >= 0);
+        
+        long div = readDiv();
+        long nextDiv = div + DIV_INC * cycles;
+        
+        if (Bits.test(rf.get(RegTimer.TAC), 2)) {
+            long period = timerPeriod();
+            long increments = nextDiv / period - div / period;
+            
+            int tima = rf.get(RegTimer.TIMA);
+            while (increments > 0) {
+                long untilOverflow = TIMA_MAX_VALUE + 1 - tima;
+                
+                if (increments < untilOverflow) {
+                    tima += (int) increments;
+                    increments = 0;
+                } else {
+                    cpu.requestInterrupt(Cpu.Interrupt.TIMER);
+                    tima = rf.get(RegTimer.TMA);
+                    increments -= untilOverflow;
+                }
+            }
+            rf.set(RegTimer.TIMA, tima);
+        }
+        
+        writeDiv(Bits.clip(16, (int) nextDiv));
+    }
+    
+    /**
+     * Gives the cycle during which the timer will next request an interrupt,
+     * provided its registers are not written to in the meantime
+     * @param cycle : the next cycle the timer will be cycled at
+     * @return the cycle of the interrupt, Long.MAX_VALUE if the timer is stopped
+     */
+    public long nextInterruptCycle(long cycle) {
+        if (!Bits.test(rf.get(RegTimer.TAC), 2)) {
+            return Long.MAX_VALUE;
+        }
+        
+        long period = timerPeriod();
+        long div = readDiv();
+        long increments = TIMA_MAX_VALUE + 1 - rf.get(RegTimer.TIMA);
+        
+        // Value DIV reaches with the falling edge that makes TIMA overflow
+        long overflowDiv = (div / period + increments) * period;
+        long cycles = (overflowDiv - div + DIV_INC - 1) / DIV_INC;
+        
+        return cycle + cycles - 1;
+    }
+
     /**
      * Reads the timer at specified address
      * @param address : 16 bits
@@ -128,6 +185,14 @@ public final class Timer implements Component, Clocked {
         }
     }
     
+    /**
+     * @return the number of DIV increments between two falling edges of the
+     * bit of DIV selected by TAC
+     */
+    private long timerPeriod() {
+        return 1L << (extractTimerIndex() + 1);
+    }
+    
     private void writeDiv(int data) {
         Preconditions.checkBits16(data);
         
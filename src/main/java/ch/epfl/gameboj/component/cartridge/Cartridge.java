@@ -9,6 +9,7 @@ import java.io.OutputStream;
 import java.util.Arrays;
 
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Banked;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Rom;
 
@@ -18,7 +19,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author Sylvain Kuchen (282380)
  * @author Luca Bataillard (282152)
  */
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, Banked {
     
     private final MBC memoryBank;
     public static final int MB_TYPE_ADDRESS = 0x147;
@@ -108,6 +109,19 @@ public final class Cartridge implements Component {
         memoryBank.write(address, data);
     }
     
+    /**
+     * Gives the rom bank of the memory bank mapped at given address
+     * @param address : 16 bits
+     * @throws IllegalArgumentException if address not 16 bits
+     * @return the index of the bank, -1 if the address is not in the rom
+     */
+    @Override
+    public int bankAt(int address) {
+        Preconditions.checkBits16(address);
+        
+        return memoryBank.bankAt(address);
+    }
+    
     /**
      * Determines if the cartridge created with this file can be saved
      * @param rom : file of cartridge's rom
@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import ch.epfl.gameboj.component.Banked;
 import ch.epfl.gameboj.component.Component;
 
 /**
@@ -8,7 +9,7 @@ import ch.epfl.gameboj.component.Component;
  * @author Sylvain Kuchen (282380)
  * @author Luca Bataillard (282152)
  */
-public abstract class MBC implements Component {
+public abstract class MBC implements Component, Banked {
     
     private final int ramSize;
     
@@ -33,6 +34,12 @@ public abstract class MBC implements Component {
     @Override
     public abstract void write(int address, int data);
     
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Banked#bankAt(int)
+     */
+    @Override
+    public abstract int bankAt(int address);
+    
     /**
      * @return the size of the ram managed by the memory bank (0 if no ram)
      */
@@ -15,6 +15,7 @@ import ch.epfl.gameboj.component.memory.Rom;
 public final class MBC0 extends MBC {
     
     public static final int ROM_SIZE = 32768;
+    private static final int ROM_BANK_SIZE = 0x4000;
     private final Rom rom;
     
     /**
@@ -58,5 +59,18 @@ public final class MBC0 extends MBC {
     public void write(int address, int data) {
         // Does nothing, ROM can't be written to
     }
+    
+    /**
+     * Gives the 16 KiB half of the rom mapped at given address
+     * @param address : 16 bits
+     * @throws IllegalArgumentException if address not 16 bits
+     * @return 0 or 1 for rom addresses, -1 otherwise
+     */
+    @Override
+    public int bankAt(int address) {
+        Preconditions.checkBits16(address);
+        
+        return address < ROM_SIZE ? address / ROM_BANK_SIZE : -1;
+    }
 
 }
@@ -10,6 +10,7 @@ import ch.epfl.gameboj.component.memory.Rom;
 
 public final class MBC1 extends MBC {
     private static final int RAM_ENABLE = 0xA;
+    private static final int ROM_BANK_BITS = 14;
 
     private enum Mode { MODE_0, MODE_1 };
 
@@ -83,6 +84,21 @@ public final class MBC1 extends MBC {
         }
     }
     
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Banked#bankAt(int)
+     */
+    @Override
+    public int bankAt(int address) {
+        switch (Bits.extract(checkBits16(address), 13, 3)) {
+        case 0: case 1:
+            return romAddress(msb2(), 0, address) >>> ROM_BANK_BITS;
+        case 2: case 3:
+            return romAddress(ramRom2, romLsb5, address) >>> ROM_BANK_BITS;
+        default:
+            return -1;
+        }
+    }
+    
     /**
      * @return a byte array with contents of whole ram
      */
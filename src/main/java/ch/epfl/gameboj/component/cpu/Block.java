@@ -0,0 +1,34 @@
+package ch.epfl.gameboj.component.cpu;
+
+/**
+ * A straight-line run of decoded instructions, together with their immediate
+ * operands. A block ends with the first instruction that can change the flow
+ * of the program or the interrupt state
+ * 
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+final class Block {
+    
+    final int start;
+    final int end;
+    final Cpu.Instruction[] instructions;
+    final int[] operands;
+    
+    int executions = 0;
+    CompiledBlock compiled = null;
+    
+    /**
+     * Creates a new block
+     * @param start : address of the first instruction
+     * @param end : address following the last byte of the last instruction
+     * @param instructions : the decoded instructions, in program order
+     * @param operands : the immediate operand of each instruction (0 if none)
+     */
+    Block(int start, int end, Cpu.Instruction[] instructions, int[] operands) {
+        this.start = start;
+        this.end = end;
+        this.instructions = instructions;
+        this.operands = operands;
+    }
+}
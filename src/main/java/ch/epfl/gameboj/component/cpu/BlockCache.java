@@ -0,0 +1,168 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.AddressMap;
+
+/**
+ * Cache of decoded blocks. Blocks of the cartridge rom are keyed by their
+ * address and rom bank, blocks of writable memory by their address only and
+ * are dropped as soon as one of their bytes is written
+ * 
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+final class BlockCache {
+    
+    static final int MAX_BLOCK_BYTES = 96;
+    
+    private static final int ROM_END = 0x8000;
+    private static final int ROM_BANK_SIZE = 0x4000;
+    private static final int CHUNK_BITS = 4;
+    private static final int ECHO_OFFSET = AddressMap.ECHO_RAM_START - AddressMap.WORK_RAM_START;
+    
+    private Block[][] romBlocks = new Block[0][];
+    private final Block[] ramBlocks = new Block[0x10000];
+    private final boolean[] codeChunks = new boolean[0x10000 >>> CHUNK_BITS];
+    private final boolean[] modifiedChunks = new boolean[0x10000 >>> CHUNK_BITS];
+    
+    /**
+     * Gives the region of the address space an address is in. A block never
+     * spans two regions, since they can be mapped independently
+     * @param address : 16 bits
+     * @return the index of the region, -1 if code in it can not be cached
+     */
+    static int region(int address) {
+        if (address < AddressMap.BOOT_ROM_END) {
+            return 0;
+        } else if (address < ROM_BANK_SIZE) {
+            return 1;
+        } else if (address < ROM_END) {
+            return 2;
+        } else if (AddressMap.WORK_RAM_START <= address && address < AddressMap.WORK_RAM_END) {
+            return 3;
+        } else if (AddressMap.HIGH_RAM_START <= address && address < AddressMap.HIGH_RAM_END) {
+            return 4;
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * @param address : 16 bits
+     * @return true if blocks at given address are keyed by rom bank
+     */
+    static boolean isRom(int address) {
+        return address < ROM_END;
+    }
+    
+    /**
+     * Gives the block of the given rom bank that starts at address
+     * @param address : rom address
+     * @param bank : rom bank mapped at address, at least -1
+     * @return the block, or null if it has not been cached
+     */
+    Block getRom(int address, int bank) {
+        int slot = bank + 1;
+        
+        if (slot >= romBlocks.length || romBlocks[slot] == null) {
+            return null;
+        }
+        
+        return romBlocks[slot][address % ROM_BANK_SIZE];
+    }
+    
+    /**
+     * Stores a block of the given rom bank
+     * @param block : the block, starting in rom
+     * @param bank : rom bank mapped at the start of the block, at least -1
+     */
+    void putRom(Block block, int bank) {
+        int slot = bank + 1;
+        
+        if (slot >= romBlocks.length) {
+            romBlocks = Arrays.copyOf(romBlocks, slot + 1);
+        }
+        if (romBlocks[slot] == null) {
+            romBlocks[slot] = new Block[ROM_BANK_SIZE];
+        }
+        
+        romBlocks[slot][block.start % ROM_BANK_SIZE] = block;
+    }
+    
+    /**
+     * Gives the block of writable memory that starts at address
+     * @param address : 16 bits
+     * @return the block, or null if it has not been cached
+     */
+    Block getRam(int address) {
+        return ramBlocks[address];
+    }
+    
+    /**
+     * Stores a block of writable memory
+     * @param block : the block
+     */
+    void putRam(Block block) {
+        ramBlocks[block.start] = block;
+        
+        for (int chunk = block.start >>> CHUNK_BITS; chunk <= (block.end - 1) >>> CHUNK_BITS; chunk++) {
+            codeChunks[chunk] = true;
+        }
+    }
+    
+    /**
+     * Drops the blocks of writable memory containing the byte at address
+     * @param address : 16-bit address that was written
+     * @return true if at least one block was dropped
+     */
+    boolean invalidate(int address) {
+        if (AddressMap.ECHO_RAM_START <= address && address < AddressMap.ECHO_RAM_END) {
+            address -= ECHO_OFFSET;
+        }
+        
+        if (!codeChunks[address >>> CHUNK_BITS]) {
+            return false;
+        }
+        
+        boolean dropped = false;
+        for (int start = Math.max(0, address - MAX_BLOCK_BYTES + 1); start <= address; start++) {
+            Block b = ramBlocks[start];
+            if (b != null && address < b.end) {
+                ramBlocks[start] = null;
+                dropped = true;
+            }
+        }
+        
+        if (dropped) {
+            modifiedChunks[address >>> CHUNK_BITS] = true;
+        }
+        
+        return dropped;
+    }
+    
+    /**
+     * @param block : a cached block
+     * @return true if code was modified, since the last clear, in one of the
+     * chunks of memory the block spans
+     */
+    boolean wasModified(Block block) {
+        for (int chunk = block.start >>> CHUNK_BITS; chunk <= (block.end - 1) >>> CHUNK_BITS; chunk++) {
+            if (modifiedChunks[chunk]) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Drops all the cached blocks
+     */
+    void clear() {
+        romBlocks = new Block[0][];
+        Arrays.fill(ramBlocks, null);
+        Arrays.fill(codeChunks, false);
+        Arrays.fill(modifiedChunks, false);
+    }
+}
@@ -0,0 +1,18 @@
+package ch.epfl.gameboj.component.cpu;
+
+/**
+ * A block translated to JVM bytecode by the {@link JitCompiler}
+ *
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+interface CompiledBlock {
+
+    /**
+     * Executes the block on the given cpu, starting with PC at the start of
+     * the block. Leaves PC and the cycle count as the interpreter would, also
+     * when the block stops early because the cpu aborted it
+     * @param cpu : the cpu whose state is modified
+     */
+    void run(Cpu cpu);
+}
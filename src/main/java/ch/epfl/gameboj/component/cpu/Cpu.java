@@ -1,15 +1,15 @@
 package ch.epfl.gameboj.component.cpu;
 
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.Register;
-import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Banked;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.cpu.Alu.Flag;
@@ -27,41 +27,69 @@ public final class Cpu implements Component, Clocked {
     
 	private static final int RAM_HALFPOINT = 0xFF00;
     private static final int INTERRUPT_CYCLE = 5;
-    private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.DIRECT); 
-    private static final Opcode[] PREFIXED_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.PREFIXED);
+    private static final int OPCODE_TABLE_SIZE = 256;
+    private static final Instruction[] DIRECT_INSTRUCTION_TABLE = buildInstructionTable(Opcode.Kind.DIRECT); 
+    private static final Instruction[] PREFIXED_INSTRUCTION_TABLE = buildInstructionTable(Opcode.Kind.PREFIXED);
     private static final int OPCODE_PREFIX = 0xCB;
+    private static final int MAX_BLOCK_INSTRUCTIONS = 32;
+    private static final int JIT_THRESHOLD = 64;
     
     private final Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
     private Bus bus;
+    private Banked banks;
+    
+    private ExecutionMode executionMode = ExecutionMode.INTERPRETER;
+    private boolean tableAlu = false;
+    private final BlockCache blockCache = new BlockCache();
+    private boolean blockAborted = false;
+    private final PollingLoopDetector pollingLoop = new PollingLoopDetector();
     
     private long nextNonIdleCycle = 0;
     
     private int PC = 0;
     private int SP = 0;
 
-    private final RegisterFile<Reg> rf = new RegisterFile<>(Reg.values());
+    // The registers are stored by pair, the first register of a pair in the 8 msb
+    private int regAF = 0;
+    private int regBC = 0;
+    private int regDE = 0;
+    private int regHL = 0;
+    private final LazyFlags lazyFlags = new LazyFlags();
 
     private boolean regIME = false;
     private int regIE = 0;
     private int regIF = 0;
     
-    private static enum Reg implements Register {
+    static enum Reg {
         A, F, B, C, D, E, H, L
     }
     
-    private static enum Reg16 {
-        AF(Reg.A, Reg.F), 
-        BC(Reg.B, Reg.C), 
-        DE(Reg.D, Reg.E), 
-        HL(Reg.H, Reg.L);
+    static enum Reg16 {
+        AF, BC, DE, HL
+    }
+    
+    /**
+     * Represents the ways the cpu can execute a program
+     */
+    public static enum ExecutionMode {
+        /**
+         * Decodes and executes one instruction at a time, with exact timing
+         */
+        INTERPRETER,
         
-        public final Reg r1;
-        public final Reg r2;
+        /**
+         * Decodes straight-line runs of instructions once, caches them and
+         * executes a whole run at a time. Other components only observe the
+         * state of the cpu between runs
+         */
+        BLOCK_CACHE,
         
-        Reg16(Reg r1, Reg r2) {
-            this.r1 = r1;
-            this.r2 = r2;
-        }
+        /**
+         * Executes like BLOCK_CACHE, and translates the runs executed often
+         * to JVM bytecode. Runs in memory that the program has modified are
+         * never translated and stay interpreted
+         */
+        JIT
     }
     
     /**
@@ -88,6 +116,71 @@ public final class Cpu implements Component, Clocked {
     }
     
     
+    /**
+     * An opcode together with its operands, decoded once from its encoding
+     * so that the execution of an instruction only reads plain fields
+     */
+    static final class Instruction {
+        final Opcode opcode;
+        final Opcode.Family family;
+        
+        final Reg r0, r3;
+        final Reg16 r16;
+        final Condition condition;
+        final RotDir rotDir;
+        final int bitIndex;
+        final boolean newBitValue;
+        final int hlIncrement;
+        final boolean usesCarry;
+        final boolean imeState;
+        final int resetAddress;
+        
+        final int totalBytes;
+        final int operandBytes;
+        final int cycles;
+        final int additionalCycles;
+        final boolean endsBlock;
+        
+        Instruction(Opcode opcode) {
+            int encoding = opcode.encoding;
+            
+            this.opcode = opcode;
+            this.family = opcode.family;
+            
+            this.r0 = extractReg(encoding, 0);
+            this.r3 = extractReg(encoding, 3);
+            this.r16 = opcode.family == Opcode.Family.LD_HLSP_S8 
+                    ? (Bits.test(encoding, 4) ? Reg16.HL : Reg16.AF) 
+                    : extractReg16(encoding);
+            this.condition = extractCondition(encoding);
+            this.rotDir = extractRotDir(encoding);
+            this.bitIndex = extractBitIndex(encoding);
+            this.newBitValue = Bits.test(encoding, 6);
+            this.hlIncrement = extractHlIncrement(encoding);
+            this.usesCarry = Bits.test(encoding, 3);
+            this.imeState = Bits.test(encoding, 3);
+            this.resetAddress = AddressMap.RESETS[extractBitIndex(encoding)];
+            
+            this.totalBytes = opcode.totalBytes;
+            this.operandBytes = opcode.kind == Kind.DIRECT ? opcode.totalBytes - 1 : 0;
+            this.cycles = opcode.cycles;
+            this.additionalCycles = opcode.additionalCycles;
+            this.endsBlock = endsBlock(opcode.family);
+        }
+        
+        private static boolean endsBlock(Opcode.Family family) {
+            switch (family) {
+            case JP_HL: case JP_N16: case JP_CC_N16: case JR_E8: case JR_CC_E8:
+            case CALL_N16: case CALL_CC_N16: case RST_U3: case RET: case RET_CC:
+            case EDI: case RETI: case HALT: case STOP:
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+    
+    
     /* Methods for Component interface */
     
     /**
@@ -132,21 +225,100 @@ public final class Cpu implements Component, Clocked {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
         
+        if (executionMode != ExecutionMode.INTERPRETER) {
+            invalidateCode(address);
+        }
+        
         if (AddressMap.HIGH_RAM_START <= address && address < AddressMap.HIGH_RAM_END) {
             highRam.write(address - AddressMap.HIGH_RAM_START, data);
         } else if (address == AddressMap.REG_IE) {
             regIE = data;
+            blockAborted = true;
         } else if (address == AddressMap.REG_IF) {
             regIF = data;
+            blockAborted = true;
         }
     }
     
+    /**
+     * Changes the way the cpu executes the program, and drops all cached code
+     * @param mode : the new execution mode
+     * @throws NullPointerException if mode is null
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        executionMode = Objects.requireNonNull(mode);
+        blockCache.clear();
+    }
+    
+    /**
+     * Chooses whether rotations and decimal adjustments are looked up in the
+     * precomputed tables of TableAlu instead of being computed by Alu. Both
+     * give the same results
+     * @param enabled : true to use the tables
+     */
+    public void setTableAlu(boolean enabled) {
+        tableAlu = enabled;
+    }
+    
+    /**
+     * Gives the cpu the component mapping the cartridge rom banks, so that
+     * cached code is keyed by bank instead of being treated as writable memory
+     * @param banks : the component mapping the rom, non-null
+     * @throws NullPointerException if banks is null
+     */
+    public void setBanks(Banked banks) {
+        this.banks = Objects.requireNonNull(banks);
+        blockCache.clear();
+    }
+    
     /**
      * Raises an interrupt by setting the corresponding bit in IF to 1
      * @param i : the interrupt to be raised
      */
     public void requestInterrupt(Interrupt i) {
         regIF = Bits.set(regIF, i.index(), true);
+        blockAborted = true;
+    }
+    
+    /**
+     * @return true if the cpu is halted and only an interrupt raised by
+     * another component can wake it up
+     */
+    public boolean isHalted() {
+        return nextNonIdleCycle == Long.MAX_VALUE && !atLeastOneInterrupt();
+    }
+    
+    /**
+     * Gives the length of the polling loop the cpu is about to go around
+     * again. Until another component changes the state of the gameboy, each
+     * iteration of such a loop does exactly the same as the previous one
+     * @param cycle : the current cycle
+     * @return the number of cycles of an iteration of the loop, 0 if the cpu
+     * does not start an iteration of a polling loop at the given cycle
+     */
+    public int pollingLoopCycles(long cycle) {
+        if (cycle != nextNonIdleCycle || (regIME && atLeastOneInterrupt())) {
+            return 0;
+        }
+        
+        return pollingLoop.loopCycles(cycle);
+    }
+    
+    /**
+     * Skips iterations of the polling loop the cpu is about to go around again
+     * @param iterations : the number of iterations to skip
+     * @throws IllegalArgumentException if the iterations are negative
+     * @throws IllegalStateException if the cpu is not about to start an iteration of a polling loop
+     */
+    public void skipPollingLoop(long iterations) {
+        Preconditions.checkArgument(iterations >= 0);
+        int loopCycles = pollingLoopCycles(nextNonIdleCycle);
+        if (loopCycles == 0) {
+            throw new IllegalStateException();
+        }
+        
+        nextNonIdleCycle += iterations * loopCycles;
+        pollingLoop.skip(iterations * loopCycles);
     }
     
     /**
@@ -178,12 +350,156 @@ public final class Cpu implements Component, Clocked {
             push16(PC);
             PC = interruptAddress;
             nextNonIdleCycle += INTERRUPT_CYCLE; 
+        } else if (executionMode != ExecutionMode.INTERPRETER) {
+            executeBlock();
         } else {
             dispatch(read8(PC));
         }
     }
     
     
+    /* Block execution */
+    
+    private void executeBlock() {
+        Block block = cachedBlock(PC);
+        
+        if (block == null) {
+            dispatch(read8(PC));
+            return;
+        }
+        
+        blockAborted = false;
+        
+        if (executionMode == ExecutionMode.JIT && ++block.executions == JIT_THRESHOLD 
+                && !blockCache.wasModified(block)) {
+            block.compiled = JitCompiler.compile(block);
+        }
+        
+        if (block.compiled != null) {
+            block.compiled.run(this);
+            return;
+        }
+        
+        Instruction[] instructions = block.instructions;
+        int[] operands = block.operands;
+        
+        for (int i = 0; i < instructions.length && !blockAborted; i++) {
+            execute(instructions[i], operands[i]);
+        }
+    }
+    
+    private Block cachedBlock(int address) {
+        if (BlockCache.region(address) < 0) {
+            return null;
+        }
+        
+        boolean banked = banks != null && BlockCache.isRom(address);
+        int bank = banked ? banks.bankAt(address) : 0;
+        Block block = banked ? blockCache.getRom(address, bank) : blockCache.getRam(address);
+        
+        if (block == null) {
+            block = decodeBlock(address);
+            
+            if (block != null) {
+                if (banked) {
+                    blockCache.putRom(block, bank);
+                } else {
+                    blockCache.putRam(block);
+                }
+            }
+        }
+        
+        return block;
+    }
+    
+    /**
+     * Decodes the instructions starting at given address, up to the first one
+     * ending a block or leaving the region of the start address
+     * @param start : address of the first instruction
+     * @return the block, or null if no instruction could be decoded
+     */
+    private Block decodeBlock(int start) {
+        Instruction[] instructions = new Instruction[MAX_BLOCK_INSTRUCTIONS];
+        int[] operands = new int[MAX_BLOCK_INSTRUCTIONS];
+        int region = BlockCache.region(start);
+        
+        int count = 0;
+        int address = start;
+        while (count < MAX_BLOCK_INSTRUCTIONS) {
+            int encoding = read8(address);
+            Instruction instr;
+            if (encoding == OPCODE_PREFIX) {
+                instr = BlockCache.region(address + 1) == region ? PREFIXED_INSTRUCTION_TABLE[read8(address + 1)] : null;
+            } else {
+                instr = DIRECT_INSTRUCTION_TABLE[encoding];
+            }
+            
+            int next = address + (instr == null ? 0 : instr.totalBytes);
+            if (instr == null || BlockCache.region(next - 1) != region || next - start > BlockCache.MAX_BLOCK_BYTES) {
+                break;
+            }
+            
+            instructions[count] = instr;
+            operands[count] = readOperand(instr, address);
+            count++;
+            address = next;
+            
+            if (instr.endsBlock) {
+                break;
+            }
+        }
+        
+        if (count == 0) {
+            return null;
+        }
+        
+        return new Block(start, address, Arrays.copyOf(instructions, count), Arrays.copyOf(operands, count));
+    }
+    
+    /**
+     * Drops the cached code containing a written address, and stops the
+     * current block if the write may have changed what it executes
+     * @param address : the written address
+     */
+    private void invalidateCode(int address) {
+        if ((banks != null && BlockCache.isRom(address)) || address == AddressMap.REG_BOOT_ROM_DISABLE) {
+            blockAborted = true;
+        } else if (blockCache.invalidate(address)) {
+            blockAborted = true;
+        }
+    }
+
+
+    /* Entry points of compiled blocks */
+
+    /**
+     * Moves PC after instructions executed by compiled code, and counts their cycles
+     * @param nextPC : address of the next instruction
+     * @param cycles : number of cycles the instructions took
+     */
+    void advance(int nextPC, int cycles) {
+        PC = nextPC;
+        nextNonIdleCycle += cycles;
+    }
+
+    /**
+     * @return true if the current block must stop after the instruction being executed
+     */
+    boolean isBlockAborted() {
+        return blockAborted;
+    }
+
+    /**
+     * Executes, with the interpreter, an instruction located at PC
+     * @param encoding : the encoding of its opcode
+     * @param prefixed : true if the opcode is prefixed
+     * @param operand : its immediate operand
+     */
+    void executeDecoded(int encoding, boolean prefixed, int operand) {
+        execute(prefixed ? PREFIXED_INSTRUCTION_TABLE[encoding] : DIRECT_INSTRUCTION_TABLE[encoding], operand);
+    }
+
+    
     /* Interrupt methods */
     
     private boolean atLeastOneInterrupt() {
@@ -211,10 +527,11 @@ public final class Cpu implements Component, Clocked {
         
         registersValues[0] = PC;
         registersValues[1] = SP;
+        flags();
         
         int index = 2;
         for (Reg reg : Reg.values()) {
-            registersValues[index] = rf.get(reg);
+            registersValues[index] = reg8(reg);
             index++;
         }
         
@@ -230,9 +547,10 @@ public final class Cpu implements Component, Clocked {
      * @throws IllegalArgumentException if the address is not a 16-bit integer
      * @return the read value
      */
-    private int read8(int address) {
+    int read8(int address) {
         Preconditions.checkBits16(address);
         
+        pollingLoop.read(address);
         return bus.read(address);
     }
     
@@ -267,24 +585,17 @@ public final class Cpu implements Component, Clocked {
         return Bits.make16(msb, lsb);
     }
     
-    /**
-     * Reads a 16-bit value at the address following the opcode's address
-     * @return the read value
-     */
-    private int read16AfterOpcode() {
-        return read16(PC + 1);
-    }
-    
     /**
      * Writes the given 8-bit value to the bus at the specified address
      * @param address : the address were the value will be written
      * @throws IllegalArgumentException if the address is not a 16-bit integer or the value is not a 8-bit integer
      * @param v : the value to be written
      */
-    private void write8(int address, int v) {
+    void write8(int address, int v) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(v);
         
+        pollingLoop.wrote();
         bus.write(address, v);
     }
     
@@ -333,37 +644,79 @@ public final class Cpu implements Component, Clocked {
     }
     
     
-    /* Getters and setters for 16-bit registers */
+    /* Getters and setters for registers */
+    
+    /**
+     * Reads the value of an 8-bit register. For F, this is the value last
+     * stored, which lags behind lazily evaluated flags (see flags())
+     * @param r : the register
+     * @return its value
+     */
+    int reg8(Reg r) {
+        switch (r) {
+        case A: return regAF >>> 8;
+        case F: return regAF & 0xFF;
+        case B: return regBC >>> 8;
+        case C: return regBC & 0xFF;
+        case D: return regDE >>> 8;
+        case E: return regDE & 0xFF;
+        case H: return regHL >>> 8;
+        case L: return regHL & 0xFF;
+        default: throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Stores a value in an 8-bit register
+     * @param r : the register
+     * @param v : the 8-bit value
+     */
+    void setReg8(Reg r, int v) {
+        switch (r) {
+        case A: regAF = (v << 8) | (regAF & 0xFF); break;
+        case F: regAF = (regAF & 0xFF00) | v; break;
+        case B: regBC = (v << 8) | (regBC & 0xFF); break;
+        case C: regBC = (regBC & 0xFF00) | v; break;
+        case D: regDE = (v << 8) | (regDE & 0xFF); break;
+        case E: regDE = (regDE & 0xFF00) | v; break;
+        case H: regHL = (v << 8) | (regHL & 0xFF); break;
+        case L: regHL = (regHL & 0xFF00) | v; break;
+        }
+    }
     
     /**
      * Reads a value stored in a 16-bit register
      * @param r : the register where the value is stored
      * @return the value
      */
-    private int reg16(Reg16 r) {
-        int msb = rf.get(r.r1);
-        int lsb = rf.get(r.r2);
-        
-        return Bits.make16(msb, lsb);
+    int reg16(Reg16 r) {
+        switch (r) {
+        case AF: return (regAF & 0xFF00) | flags();
+        case BC: return regBC;
+        case DE: return regDE;
+        case HL: return regHL;
+        default: throw new IllegalArgumentException();
+        }
     }
     
     /**
-     * Stores a given 16-bit value in the specified 16-bit register
+     * Stores a given 16-bit value in the specified 16-bit register. Bits
+     * above the 16 lsb are ignored, so that increments and decrements wrap
      * @param r : the register where the value will be stored
      * @param newV : the value to store
-     * @throws IllegalArgumentException if the value is not a 16-bit integer
      */
-    private void setReg16(Reg16 r, int newV) {
-        
-        int lsb = Bits.clip(8, newV);
-        int msb = Bits.extract(newV, 8, 8);
+    void setReg16(Reg16 r, int newV) {
+        int v = newV & 0xFFFF;
         
-        if (r == Reg16.AF) {
-            lsb = Bits.extract(lsb, 4, 4) << 4;
+        switch (r) {
+        case AF: 
+            regAF = v & 0xFFF0;
+            lazyFlags.clear();
+            break;
+        case BC: regBC = v; break;
+        case DE: regDE = v; break;
+        case HL: regHL = v; break;
         }
-        
-        rf.set(r.r1, msb);
-        rf.set(r.r2, lsb);
     }
     
     /**
@@ -371,7 +724,7 @@ public final class Cpu implements Component, Clocked {
      * @param r : the register where the value will be stored
      * @param newV : the value to store
      */
-    private void setReg16SP(Reg16 r, int newV) {
+    void setReg16SP(Reg16 r, int newV) {
         if (r == Reg16.AF) {
             SP = newV;
         } else {
@@ -382,8 +735,8 @@ public final class Cpu implements Component, Clocked {
 
     /* Bit extraction */
     
-    private Reg extractReg(Opcode opcode, int startBit) {
-        int registerCode = Bits.extract(opcode.encoding, startBit, 3);
+    private static Reg extractReg(int encoding, int startBit) {
+        int registerCode = Bits.extract(encoding, startBit, 3);
         
         switch(registerCode) {
             case 0b000: return Reg.B;
@@ -394,12 +747,12 @@ public final class Cpu implements Component, Clocked {
             case 0b101: return Reg.L;
             case 0b111: return Reg.A;
             
-            default : throw new IllegalArgumentException("Invalid register code");
+            default : return null; // (HL), not a register
         }
     }
     
-    private Reg16 extractReg16(Opcode opcode) {
-        int registerCode = Bits.extract(opcode.encoding, 4, 2);
+    private static Reg16 extractReg16(int encoding) {
+        int registerCode = Bits.extract(encoding, 4, 2);
         
         switch(registerCode) {
             case 0b00: return Reg16.BC;
@@ -411,80 +764,101 @@ public final class Cpu implements Component, Clocked {
         }
     }
     
-    private int extractHlIncrement(Opcode opcode) {
-        return Bits.test(opcode.encoding, 4) ? -1 : 1;
-    }
-    
-    private RotDir extractRotDir(Opcode opcode) {
-        return Bits.test(opcode.encoding, 3) ? RotDir.RIGHT : RotDir.LEFT;
+    private static int extractHlIncrement(int encoding) {
+        return Bits.test(encoding, 4) ? -1 : 1;
     }
     
-    private int extractBitIndex(Opcode opcode) {
-        return Bits.extract(opcode.encoding, 3, 3);
+    private static RotDir extractRotDir(int encoding) {
+        return Bits.test(encoding, 3) ? RotDir.RIGHT : RotDir.LEFT;
     }
     
-    private boolean extractNewBitValue(Opcode opcode) {
-        return Bits.test(opcode.encoding, 6);
+    private static int extractBitIndex(int encoding) {
+        return Bits.extract(encoding, 3, 3);
     }
     
-    private boolean extractInitalCarry(Opcode opcode) {
-        return Bits.test(opcode.encoding, 3) && getFlagFromF(Flag.C);
+    private static Condition extractCondition(int encoding) {
+        int code = Bits.extract(encoding, 3, 2);
+        
+        switch (code) {
+        case 0b00:
+            return Condition.NZ;
+        case 0b01:
+            return Condition.Z;
+        case 0b10:
+            return Condition.NC;
+        case 0b11:
+            return Condition.C;
+            
+        default:
+            throw new IllegalArgumentException();
+        }
     }
     
-    private boolean extractIMEState(Opcode opcode) {
-        return Bits.test(opcode.encoding, 3);
+    private boolean initialCarry(Instruction instr) {
+        return instr.usesCarry && getFlagFromF(Flag.C);
     }
     
    
-    /* Opcode table methods */
+    /* Instruction table methods */
     
     /**
-     * Creates a table of opcodes, filtering out non-direct ones
+     * Creates a table of decoded instructions of the given kind, indexed by their encoding
      * @param kind : the kind of opcodes the table will contain
-     * @return the table of opcodes
+     * @return the table of instructions, with null at encodings that do not exist
      */
-    private static Opcode[] buildOpcodeTable(Kind kind) {
-        ArrayList<Opcode> table = new ArrayList<>();
-        
-        // TODO Disputer que tableau plus beau que arraylist
-        //Opcode[] table = new Opcode[NUMBER_OF_OPCODES];
+    private static Instruction[] buildInstructionTable(Kind kind) {
+        Instruction[] table = new Instruction[OPCODE_TABLE_SIZE];
         
         for (Opcode o : Opcode.values()) {
             if (o.kind == kind) {
-                table.add(o);
+                table[o.encoding] = new Instruction(o);
             }
         }
         
-        return table.toArray(new Opcode[table.size()]);
+        return table;
     }
     
     /**
-     * Searches an opcode by its encoding in an opcode table
+     * Looks up a decoded instruction by its encoding in an instruction table
      * @param opcodeEncoding : the encoding of the opcode
-     * @throws NullPointerException if the register encoding is not 8 bits long
-     * @return the opcode
+     * @param instructionTable : the table indexed by encoding
+     * @throws NullPointerException if the encoding does not exist
+     * @return the decoded instruction
      */
-    private Opcode searchOpcodeTable(int opcodeEncoding, Opcode[] opcodeTable) {
-        Preconditions.checkBits8(opcodeEncoding);
+    private static Instruction searchInstructionTable(int opcodeEncoding, Instruction[] instructionTable) {
+        Instruction instr = instructionTable[opcodeEncoding];
         
-        for (Opcode o : opcodeTable) {
-            if (o.encoding == opcodeEncoding) {
-                return o;
-            }
+        if (instr == null) {
+            throw new NullPointerException("Opcode encoding does not exist");
         }
         
-        throw new NullPointerException("Opcode encoding does not exist");
+        return instr;
     }
     
     
     /* Flag Manipulation */
     
     private void setRegFromAlu(Reg r, int vf) {
-        rf.set(r, Alu.unpackValue(vf));
+        setReg8(r, Alu.unpackValue(vf));
     }
     
     private void setFlags(int valueFlags) {
-        rf.set(Reg.F, Alu.unpackFlags(valueFlags));
+        lazyFlags.clear();
+        setReg8(Reg.F, Alu.unpackFlags(valueFlags));
+    }
+    
+    /**
+     * Gives the value of the F register, computing the flags of the last
+     * lazily evaluated operation if needed
+     * @return the flags (ZNHC0000)
+     */
+    private int flags() {
+        if (lazyFlags.isPending()) {
+            setReg8(Reg.F, lazyFlags.flags());
+            lazyFlags.clear();
+        }
+        
+        return reg8(Reg.F);
     }
     
     private void setRegFlags(Reg r, int vf) {
@@ -512,12 +886,12 @@ public final class Cpu implements Component, Clocked {
     }
     
     private boolean getFlagFromF(Flag f) {
-        return rf.testBit(Reg.F, f);
+        return Bits.test(flags(), f);
     }
     
-    private boolean testCondition(Opcode opcode) {
-        Condition c = extractCondition(opcode);
-        boolean result = Bits.test(rf.get(Reg.F), c.flag);
+    private boolean testCondition(Instruction instr) {
+        Condition c = instr.condition;
+        boolean result = getFlagFromF(c.flag);
         
         if (c.negative) {
             return !result;
@@ -525,22 +899,113 @@ public final class Cpu implements Component, Clocked {
         return result;
     }
     
-    private Condition extractCondition(Opcode opcode) {
-        int code = Bits.extract(opcode.encoding, 3, 2);
+    
+    /* Lazily evaluated 8-bit arithmetic */
+    
+    /**
+     * Adds a value to A, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     * @param useCarry : true to add the carry flag too
+     */
+    void addA(int v, boolean useCarry) {
+        int a = reg8(Reg.A);
+        int c = useCarry && getFlagFromF(Flag.C) ? 1 : 0;
         
-        switch (code) {
-        case 0b00:
-            return Condition.NZ;
-        case 0b01:
-            return Condition.Z;
-        case 0b10:
-            return Condition.NC;
-        case 0b11:
-            return Condition.C;
-            
-        default:
-            throw new IllegalArgumentException();
-        }
+        setReg8(Reg.A, (a + v + c) & 0xFF);
+        lazyFlags.add(a, v, c);
+    }
+    
+    /**
+     * Subtracts a value from A, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     * @param useCarry : true to subtract the carry flag too
+     */
+    void subA(int v, boolean useCarry) {
+        int a = reg8(Reg.A);
+        int c = useCarry && getFlagFromF(Flag.C) ? 1 : 0;
+        
+        setReg8(Reg.A, (a - v - c) & 0xFF);
+        lazyFlags.sub(a, v, c);
+    }
+    
+    /**
+     * Compares A with a value, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     */
+    void cpA(int v) {
+        lazyFlags.sub(reg8(Reg.A), v, 0);
+    }
+    
+    /**
+     * Stores A & v in A, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     */
+    void andA(int v) {
+        int result = reg8(Reg.A) & v;
+        setReg8(Reg.A, result);
+        lazyFlags.and(result);
+    }
+    
+    /**
+     * Stores A | v in A, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     */
+    void orA(int v) {
+        int result = reg8(Reg.A) | v;
+        setReg8(Reg.A, result);
+        lazyFlags.orXor(result);
+    }
+    
+    /**
+     * Stores A ^ v in A, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     */
+    void xorA(int v) {
+        int result = reg8(Reg.A) ^ v;
+        setReg8(Reg.A, result);
+        lazyFlags.orXor(result);
+    }
+    
+    /**
+     * Increments an 8-bit value, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     * @return the incremented value
+     */
+    int inc8(int v) {
+        int result = (v + 1) & 0xFF;
+        lazyFlags.inc(result, getFlagFromF(Flag.C));
+        return result;
+    }
+    
+    /**
+     * Decrements an 8-bit value, recording the operation instead of computing the flags
+     * @param v : 8 bits
+     * @return the decremented value
+     */
+    int dec8(int v) {
+        int result = (v - 1) & 0xFF;
+        lazyFlags.dec(result, getFlagFromF(Flag.C));
+        return result;
+    }
+    
+    
+    /* Operations that can be table-driven */
+    
+    private int rotate(RotDir d, int v) {
+        return tableAlu ? TableAlu.rotate(d, v) : Alu.rotate(d, v);
+    }
+    
+    private int rotateThroughCarry(RotDir d, int v) {
+        boolean c = getFlagFromF(Flag.C);
+        return tableAlu ? TableAlu.rotate(d, v, c) : Alu.rotate(d, v, c);
+    }
+    
+    private int bcdAdjust(int v) {
+        boolean n = getFlagFromF(Flag.N);
+        boolean h = getFlagFromF(Flag.H);
+        boolean c = getFlagFromF(Flag.C);
+        
+        return tableAlu ? TableAlu.bcdAdjust(v, n, h, c) : Alu.bcdAdjust(v, n, h, c);
     }
     
     
@@ -549,17 +1014,41 @@ public final class Cpu implements Component, Clocked {
     private void dispatch(int opcodeEncoding) {
         Preconditions.checkBits8(opcodeEncoding);
         
-        Opcode opcode = null;
+        Instruction instr;
         if (opcodeEncoding == OPCODE_PREFIX) {
-            opcode = searchOpcodeTable(read8AfterOpcode(), PREFIXED_OPCODE_TABLE);
+            instr = searchInstructionTable(read8AfterOpcode(), PREFIXED_INSTRUCTION_TABLE);
         } else {
-            opcode = searchOpcodeTable(opcodeEncoding, DIRECT_OPCODE_TABLE); 
+            instr = searchInstructionTable(opcodeEncoding, DIRECT_INSTRUCTION_TABLE); 
         }
         
+        execute(instr, readOperand(instr, PC));
+    }
+    
+    /**
+     * Reads the immediate operand of an instruction
+     * @param instr : the instruction
+     * @param address : the address of the instruction
+     * @return the 8 or 16-bit operand, 0 if the instruction has none
+     */
+    private int readOperand(Instruction instr, int address) {
+        switch (instr.operandBytes) {
+        case 1: return read8(address + 1);
+        case 2: return read16(address + 1);
+        default: return 0;
+        }
+    }
+    
+    /**
+     * Executes an instruction located at PC
+     * @param instr : the decoded instruction
+     * @param operand : its immediate operand
+     */
+    private void execute(Instruction instr, int operand) {
         int additionalCycles = 0;
-        int nextPC = PC + opcode.totalBytes;
+        boolean jumpedBack = false;
+        int nextPC = PC + instr.totalBytes;
                 
-        switch (opcode.family) {
+        switch (instr.family) {
             case NOP: {
                 // Does nothing
             } break;
@@ -567,81 +1056,81 @@ public final class Cpu implements Component, Clocked {
             // Load instructions
             
             case LD_R8_HLR: {
-                Reg reg = extractReg(opcode, 3);
-                rf.set(reg, read8AtHl());
+                Reg reg = instr.r3;
+                setReg8(reg, read8AtHl());
             } break;
             case LD_A_HLRU: {
-                rf.set(Reg.A, read8AtHl());
-                setReg16(Reg16.HL, reg16(Reg16.HL) + extractHlIncrement(opcode));
+                setReg8(Reg.A, read8AtHl());
+                setReg16(Reg16.HL, reg16(Reg16.HL) + instr.hlIncrement);
             } break;
             case LD_A_N8R: {
-                rf.set(Reg.A, read8(AddressMap.REGS_START + read8AfterOpcode()));
+                setReg8(Reg.A, read8(AddressMap.REGS_START + operand));
             } break;
             case LD_A_CR: {
-                rf.set(Reg.A, read8(AddressMap.REGS_START + rf.get(Reg.C)));
+                setReg8(Reg.A, read8(AddressMap.REGS_START + reg8(Reg.C)));
             } break;
             case LD_A_N16R: {
-                rf.set(Reg.A, read8(read16AfterOpcode()));
+                setReg8(Reg.A, read8(operand));
             } break;
             case LD_A_BCR: {
-                rf.set(Reg.A, read8(reg16(Reg16.BC)));
+                setReg8(Reg.A, read8(reg16(Reg16.BC)));
             } break;
             case LD_A_DER: {
-                rf.set(Reg.A, read8(reg16(Reg16.DE)));
+                setReg8(Reg.A, read8(reg16(Reg16.DE)));
             } break;
             case LD_R8_N8: {
-                Reg reg = extractReg(opcode, 3);
-                rf.set(reg, read8AfterOpcode());
+                Reg reg = instr.r3;
+                setReg8(reg, operand);
             } break;
             case LD_R16SP_N16: {
-                Reg16 reg16 = extractReg16(opcode);
-                setReg16SP(reg16, read16AfterOpcode());
+                Reg16 reg16 = instr.r16;
+                setReg16SP(reg16, operand);
             } break;
             case POP_R16: {
-                Reg16 reg16 = extractReg16(opcode);
+                Reg16 reg16 = instr.r16;
                 setReg16(reg16, pop16());
             } break;
             
             // Write instructions
             
             case LD_HLR_R8: {
-                Reg reg = extractReg(opcode, 0);
-                write8AtHl(rf.get(reg));
+                Reg reg = instr.r0;
+                write8AtHl(reg8(reg));
             } break;
             case LD_HLRU_A: {
-                write8AtHl(rf.get(Reg.A));
-                setReg16(Reg16.HL, reg16(Reg16.HL) + extractHlIncrement(opcode));
+                write8AtHl(reg8(Reg.A));
+                setReg16(Reg16.HL, reg16(Reg16.HL) + instr.hlIncrement);
             } break;
             case LD_N8R_A: {
-                write8(RAM_HALFPOINT + read8AfterOpcode(), rf.get(Reg.A));
+                write8(RAM_HALFPOINT + operand, reg8(Reg.A));
             } break;
             case LD_CR_A: {
-                write8(RAM_HALFPOINT + rf.get(Reg.C), rf.get(Reg.A));
+                write8(RAM_HALFPOINT + reg8(Reg.C), reg8(Reg.A));
             } break;
             case LD_N16R_A: {
-                write8(read16AfterOpcode(), rf.get(Reg.A));
+                write8(operand, reg8(Reg.A));
             } break;
             case LD_BCR_A: {
-                write8(reg16(Reg16.BC), rf.get(Reg.A));
+                write8(reg16(Reg16.BC), reg8(Reg.A));
             } break;
             case LD_DER_A: {
-                write8(reg16(Reg16.DE), rf.get(Reg.A));
+                write8(reg16(Reg16.DE), reg8(Reg.A));
             } break;
             case LD_HLR_N8: {
-                write8AtHl(read8AfterOpcode());
+                write8AtHl(operand);
             } break;
             case LD_N16R_SP: {
-                write16(read16AfterOpcode(), SP);
+                write16(operand, SP);
             } break;
             case PUSH_R16: {
-                Reg16 reg16 = extractReg16(opcode);
+                Reg16 reg16 = instr.r16;
                 push16(reg16(reg16));
             } break;
             case LD_R8_R8: {
-                Reg reg1 = extractReg(opcode, 0);
-                Reg reg2 = extractReg(opcode, 3);
+                Reg reg1 = instr.r0;
+                Reg reg2 = instr.r3;
                 
-                rf.set(reg2, rf.get(reg1));
+                setReg8(reg2, reg8(reg1));
             } break;
             case LD_SP_HL: {
                 SP = reg16(Reg16.HL);
@@ -650,30 +1139,23 @@ public final class Cpu implements Component, Clocked {
             // Add instructions
             
             case ADD_A_R8: {
-                int vf = Alu.add(rf.get(Reg.A), rf.get(extractReg(opcode, 0)), extractInitalCarry(opcode));
-                setRegFlags(Reg.A, vf);
+                addA(reg8(instr.r0), instr.usesCarry);
             } break;
             case ADD_A_N8: {
-                int vf = Alu.add(rf.get(Reg.A), read8AfterOpcode(), extractInitalCarry(opcode));
-                setRegFlags(Reg.A, vf);
+                addA(operand, instr.usesCarry);
             } break;
             case ADD_A_HLR: {
-                int vf = Alu.add(rf.get(Reg.A), read8AtHl(), extractInitalCarry(opcode));
-                setRegFlags(Reg.A, vf);
+                addA(read8AtHl(), instr.usesCarry);
             } break;
             case INC_R8: {
-                Reg r = extractReg(opcode, 3);
-                int vf = Alu.add(rf.get(r), 1);
-                setRegFromAlu(r, vf);
-                combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
+                Reg r = instr.r3;
+                setReg8(r, inc8(reg8(r)));
             } break;
             case INC_HLR: {
-                int vf = Alu.add(read8AtHl(), 1);
-                write8AtHl(Alu.unpackValue(vf));
-                combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
+                write8AtHl(inc8(read8AtHl()));
             } break;
             case INC_R16SP: {
-                Reg16 r = extractReg16(opcode);
+                Reg16 r = instr.r16;
                 int vf;
                 if (r == Reg16.AF) {
                     vf = Alu.add16H(SP, 1);
@@ -684,7 +1166,7 @@ public final class Cpu implements Component, Clocked {
                 combineAluFlags(vf, FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU);
             } break;
             case ADD_HL_R16SP: {
-                Reg16 r = extractReg16(opcode);
+                Reg16 r = instr.r16;
                 int arg = r == Reg16.AF ? SP : reg16(r);
                 int vf = Alu.add16H(reg16(Reg16.HL), arg);
                 
@@ -692,139 +1174,117 @@ public final class Cpu implements Component, Clocked {
                 combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
             } break;
             case LD_HLSP_S8: {
-                int vf = Alu.add16L(SP, Bits.clip(16, Bits.signExtend8(read8AfterOpcode())));
-                Reg16 r = Bits.test(opcode.encoding, 4) ? Reg16.HL : Reg16.AF;
+                int vf = Alu.add16L(SP, Bits.clip(16, Bits.signExtend8(operand)));
+                Reg16 r = instr.r16;
                 setReg16SP(r, Alu.unpackValue(vf));
                 combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
             } break;
             
          // Subtract
             case SUB_A_R8: {
-                int vf = Alu.sub(rf.get(Reg.A), rf.get(extractReg(opcode, 0)), extractInitalCarry(opcode));
-                setRegFlags(Reg.A, vf);
+                subA(reg8(instr.r0), instr.usesCarry);
             } break;
             case SUB_A_N8: {
-                int vf = Alu.sub(rf.get(Reg.A), read8AfterOpcode(), extractInitalCarry(opcode));
-                setRegFlags(Reg.A, vf);
+                subA(operand, instr.usesCarry);
             } break;
             case SUB_A_HLR: {
-                int vf = Alu.sub(rf.get(Reg.A), read8AtHl(), extractInitalCarry(opcode));
-                setRegFlags(Reg.A, vf);;
+                subA(read8AtHl(), instr.usesCarry);
             } break;
             case DEC_R8: {
-                Reg r = extractReg(opcode, 3);
-                int vf = Alu.sub(rf.get(r), 1);
-                setRegFromAlu(r, vf);
-                combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
+                Reg r = instr.r3;
+                setReg8(r, dec8(reg8(r)));
             } break;
             case DEC_HLR: {
-                int vf = Alu.sub(read8AtHl(), 1);
-                write8AtHl(Alu.unpackValue(vf));
-                combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
+                write8AtHl(dec8(read8AtHl()));
             } break;
             case CP_A_R8: {
-                int vf = Alu.sub(rf.get(Reg.A), rf.get(extractReg(opcode, 0)));
-                setFlags(vf);
+                cpA(reg8(instr.r0));
             } break;
             case CP_A_N8: {
-                int vf = Alu.sub(rf.get(Reg.A), read8AfterOpcode());
-                setFlags(vf);
+                cpA(operand);
             } break;
             case CP_A_HLR: {
-                int vf = Alu.sub(rf.get(Reg.A), read8AtHl());
-                setFlags(vf);
+                cpA(read8AtHl());
             } break;
             case DEC_R16SP: {
-                Reg16 r = extractReg16(opcode);
+                Reg16 r = instr.r16;
                 int dec = r == Reg16.AF ? SP : reg16(r);
                 setReg16SP(r, Bits.clip(16, dec - 1));    
             } break;
             
             // And, or, xor, complement
             case AND_A_N8: {
-                int vf = Alu.and(rf.get(Reg.A), read8AfterOpcode());
-                setRegFlags(Reg.A, vf);
+                andA(operand);
             } break;
             case AND_A_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.and(rf.get(Reg.A), rf.get(r));
-                setRegFlags(Reg.A, vf);
+                andA(reg8(instr.r0));
             } break;
             case AND_A_HLR: {
-                int vf = Alu.and(rf.get(Reg.A), read8AtHl());
-                setRegFlags(Reg.A, vf);
+                andA(read8AtHl());
             } break;
             case OR_A_N8: {
-                int vf = Alu.or(rf.get(Reg.A), read8AfterOpcode());
-                setRegFlags(Reg.A, vf);
+                orA(operand);
             } break;
             case OR_A_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.or(rf.get(Reg.A), rf.get(r));
-                setRegFlags(Reg.A, vf);
+                orA(reg8(instr.r0));
             } break;
             case OR_A_HLR: {
-                int vf = Alu.or(rf.get(Reg.A), read8AtHl());
-                setRegFlags(Reg.A, vf);
+                orA(read8AtHl());
             } break;
             case XOR_A_N8: {
-                int vf = Alu.xor(rf.get(Reg.A), read8AfterOpcode());
-                setRegFlags(Reg.A, vf);
+                xorA(operand);
             } break;
             case XOR_A_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.xor(rf.get(Reg.A), rf.get(r));
-                setRegFlags(Reg.A, vf);
+                xorA(reg8(instr.r0));
             } break;
             case XOR_A_HLR: {
-                int vf = Alu.xor(rf.get(Reg.A), read8AtHl());
-                setRegFlags(Reg.A, vf);
+                xorA(read8AtHl());
             } break;
             case CPL: {
-                int v = Bits.complement8(rf.get(Reg.A));
-                rf.set(Reg.A, v);
+                int v = Bits.complement8(reg8(Reg.A));
+                setReg8(Reg.A, v);
                 combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1, FlagSrc.CPU);
             } break;
             
             // Rotate, shift
             
             case ROTCA: {
-                RotDir rd = extractRotDir(opcode);
-                int vf = Alu.rotate(rd, rf.get(Reg.A));
+                RotDir rd = instr.rotDir;
+                int vf = rotate(rd, reg8(Reg.A));
                 setRegFromAlu(Reg.A, vf);
                 combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             } break;
             case ROTA: {
-                RotDir rd = extractRotDir(opcode);
-                int vf = Alu.rotate(rd, rf.get(Reg.A), getFlagFromF(Flag.C));
+                RotDir rd = instr.rotDir;
+                int vf = rotateThroughCarry(rd, reg8(Reg.A));
                 setRegFromAlu(Reg.A, vf);
                 combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             } break;
             case ROTC_R8: {
-                RotDir rd = extractRotDir(opcode);
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.rotate(rd, rf.get(r));
+                RotDir rd = instr.rotDir;
+                Reg r = instr.r0;
+                int vf = rotate(rd, reg8(r));
                 setRegFlags(r, vf);
             } break;
             case ROT_R8: {
-                RotDir rd = extractRotDir(opcode);
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.rotate(rd, rf.get(r), getFlagFromF(Flag.C));
+                RotDir rd = instr.rotDir;
+                Reg r = instr.r0;
+                int vf = rotateThroughCarry(rd, reg8(r));
                 setRegFlags(r, vf);
             } break;
             case ROTC_HLR: {
-                RotDir rd = extractRotDir(opcode);
-                int vf = Alu.rotate(rd, read8AtHl());
+                RotDir rd = instr.rotDir;
+                int vf = rotate(rd, read8AtHl());
                 write8AtHlAndSetFlags(vf);
             } break;
             case ROT_HLR: {
-                RotDir rd = extractRotDir(opcode);
-                int vf = Alu.rotate(rd, read8AtHl(), getFlagFromF(Flag.C));
+                RotDir rd = instr.rotDir;
+                int vf = rotateThroughCarry(rd, read8AtHl());
                 write8AtHlAndSetFlags(vf);
             } break;
             case SWAP_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.swap(rf.get(r));
+                Reg r = instr.r0;
+                int vf = Alu.swap(reg8(r));
                 setRegFlags(r, vf);
             } break;
             case SWAP_HLR: {
@@ -832,18 +1292,18 @@ public final class Cpu implements Component, Clocked {
                 write8AtHlAndSetFlags(vf);
             } break;
             case SLA_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.shiftLeft(rf.get(r));
+                Reg r = instr.r0;
+                int vf = Alu.shiftLeft(reg8(r));
                 setRegFlags(r, vf);
             } break;
             case SRA_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.shiftRightA(rf.get(r));
+                Reg r = instr.r0;
+                int vf = Alu.shiftRightA(reg8(r));
                 setRegFlags(r, vf);
             } break;
             case SRL_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.shiftRightL(rf.get(r));
+                Reg r = instr.r0;
+                int vf = Alu.shiftRightL(reg8(r));
                 setRegFlags(r, vf);
             } break;
             case SLA_HLR: {
@@ -862,38 +1322,32 @@ public final class Cpu implements Component, Clocked {
             // Bit test and set
             
             case BIT_U3_R8: {
-                Reg r = extractReg(opcode, 0);
-                int vf = Alu.testBit(rf.get(r), extractBitIndex(opcode));
+                Reg r = instr.r0;
+                int vf = Alu.testBit(reg8(r), instr.bitIndex);
                 combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
             } break;
             case BIT_U3_HLR: {
-                int vf = Alu.testBit(read8AtHl(), extractBitIndex(opcode));
+                int vf = Alu.testBit(read8AtHl(), instr.bitIndex);
                 combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
             } break;
             case CHG_U3_R8: {
-                Reg r = extractReg(opcode, 0);
-                rf.set(r, Bits.set(rf.get(r), extractBitIndex(opcode), extractNewBitValue(opcode)));
+                Reg r = instr.r0;
+                setReg8(r, Bits.set(reg8(r), instr.bitIndex, instr.newBitValue));
             } break;
             case CHG_U3_HLR: {
-                write8AtHl(Bits.set(read8AtHl(), extractBitIndex(opcode), extractNewBitValue(opcode)));
+                write8AtHl(Bits.set(read8AtHl(), instr.bitIndex, instr.newBitValue));
             } break;
 
             // Misc. ALU
             
             case DAA: {
-                int vf = Alu.bcdAdjust(rf.get(Reg.A), getFlagFromF(Flag.N), getFlagFromF(Flag.H), getFlagFromF(Flag.C));
+                int vf = bcdAdjust(reg8(Reg.A));
                 setRegFromAlu(Reg.A, vf);
                 combineAluFlags(vf, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU);
             } break;
             case SCCF: {
-                if (!extractInitalCarry(opcode)) {
-                    rf.setBit(Reg.F, Flag.C, true);
-                } else {
-                    rf.setBit(Reg.F, Flag.C, !rf.testBit(Reg.F, Flag.C));
-                }
-                
-                rf.setBit(Reg.F, Flag.H, false);
-                rf.setBit(Reg.F, Flag.N, false);
+                boolean carry = !initialCarry(instr);
+                setFlags(Alu.maskZNHC(getFlagFromF(Flag.Z), false, false, carry));
             } break;
             
             // Jumps
@@ -902,21 +1356,25 @@ public final class Cpu implements Component, Clocked {
                 nextPC = reg16(Reg16.HL);
             } break;
             case JP_N16: {
-                nextPC = read16AfterOpcode();
+                nextPC = operand;
+                jumpedBack = nextPC <= PC;
             } break;
             case JP_CC_N16: {
-                if (testCondition(opcode)) {
-                    nextPC = read16AfterOpcode();
-                    additionalCycles = opcode.additionalCycles;
+                if (testCondition(instr)) {
+                    nextPC = operand;
+                    additionalCycles = instr.additionalCycles;
+                    jumpedBack = nextPC <= PC;
                 }
             } break;
             case JR_E8: {
-                nextPC = Bits.clip(16, nextPC + Bits.signExtend8(read8AfterOpcode()));
+                nextPC = Bits.clip(16, nextPC + Bits.signExtend8(operand));
+                jumpedBack = nextPC <= PC;
             } break;
             case JR_CC_E8: {
-                if (testCondition(opcode)) {
-                    nextPC = Bits.clip(16, nextPC + Bits.signExtend8(read8AfterOpcode()));
-                    additionalCycles = opcode.additionalCycles;
+                if (testCondition(instr)) {
+                    nextPC = Bits.clip(16, nextPC + Bits.signExtend8(operand));
+                    additionalCycles = instr.additionalCycles;
+                    jumpedBack = nextPC <= PC;
                 }
             } break;
 
@@ -924,33 +1382,33 @@ public final class Cpu implements Component, Clocked {
             
             case CALL_N16: {
                 push16(nextPC);
-                nextPC = read16AfterOpcode();
+                nextPC = operand;
             } break;
             case CALL_CC_N16: {
-                if (testCondition(opcode)) {
+                if (testCondition(instr)) {
                     push16(nextPC);
-                    nextPC = read16AfterOpcode();
-                    additionalCycles = opcode.additionalCycles;
+                    nextPC = operand;
+                    additionalCycles = instr.additionalCycles;
                 }
             } break;
             case RST_U3: {
                 push16(nextPC);
-                nextPC = AddressMap.RESETS[Bits.extract(opcode.encoding, 3, 3)];
+                nextPC = instr.resetAddress;
             } break;
             case RET: {
                 nextPC = pop16();
             } break;
             case RET_CC: {
-                if (testCondition(opcode)) {
+                if (testCondition(instr)) {
                     nextPC = pop16();
-                    additionalCycles = opcode.additionalCycles;
+                    additionalCycles = instr.additionalCycles;
                 }
             } break;
 
             // Interrupts
             
             case EDI: {
-                regIME = extractIMEState(opcode);
+                regIME = instr.imeState;
             } break;
             case RETI: {
                 regIME = true;
@@ -970,8 +1428,13 @@ public final class Cpu implements Component, Clocked {
         }
         
         PC = nextPC;
-        nextNonIdleCycle += opcode.cycles;
-        nextNonIdleCycle += additionalCycles;        
+        nextNonIdleCycle += instr.cycles;
+        nextNonIdleCycle += additionalCycles;
+        
+        if (jumpedBack) {
+            long registers = ((long) reg16(Reg16.AF) << 48) | ((long) regBC << 32) | ((long) regDE << 16) | regHL;
+            pollingLoop.jumpedBack(PC, nextNonIdleCycle, registers, SP, regIME);
+        }
     }
     
 }
@@ -0,0 +1,553 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.cpu.Cpu.Instruction;
+import ch.epfl.gameboj.component.cpu.Cpu.Reg;
+import ch.epfl.gameboj.component.cpu.Cpu.Reg16;
+import ch.epfl.gameboj.component.cpu.Opcode.Kind;
+
+/**
+ * Translates blocks into JVM classes implementing {@link CompiledBlock}.
+ *
+ * Loads, stores and 8-bit arithmetic are emitted as straight calls to small
+ * methods of the cpu, which the JVM can inline and optimize across the
+ * instructions of the block. The other instructions call back into the
+ * interpreter. PC and the cycle count are only updated where the interpreter
+ * may observe them: before calling back into it, after the last instruction,
+ * and when a write aborts the block.
+ *
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+final class JitCompiler {
+
+    private static final String CPU = internalName(Cpu.class);
+    private static final String REG = internalName(Reg.class);
+    private static final String REG16 = internalName(Reg16.class);
+    private static final String COMPILED_BLOCK = internalName(CompiledBlock.class);
+    private static final String CLASS_PREFIX = CPU.substring(0, CPU.lastIndexOf('/') + 1) + "CompiledBlock$";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    private static final int CLASS_FILE_VERSION = 52;
+    private static final int MAX_STACK = 8;
+    private static final int MAX_LOCALS = 2;
+
+    private JitCompiler() {}
+
+    /**
+     * Translates a block into a new class and instantiates it
+     * @param block : the block, which must not be modified afterwards
+     * @return the compiled block, or null if the class could not be defined,
+     * in which case the block keeps being interpreted
+     */
+    static CompiledBlock compile(Block block) {
+        String name = CLASS_PREFIX + Integer.toHexString(block.start) + "$" + classCount.getAndIncrement();
+
+        try {
+            Class<?> c = LOOKUP.defineClass(classFile(name, block));
+            return (CompiledBlock) c.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+
+    /* Translation of the instructions */
+
+    private static byte[] classFile(String name, Block block) {
+        ClassFile cf = new ClassFile(name);
+        Code code = new Code(cf);
+
+        int pc = block.start;
+        int pendingCycles = 0;
+        boolean synced = true;
+
+        for (int i = 0; i < block.instructions.length; i++) {
+            Instruction instr = block.instructions[i];
+            int operand = block.operands[i];
+            boolean last = i == block.instructions.length - 1;
+
+            if (emit(code, instr, operand)) {
+                pc += instr.totalBytes;
+                pendingCycles += instr.cycles;
+                synced = false;
+
+                if (writesMemory(instr) && !last) {
+                    code.returnIfAborted(pc, pendingCycles);
+                }
+            } else {
+                code.advance(pc, pendingCycles);
+                code.cpu();
+                code.constant(instr.opcode.encoding);
+                code.constant(instr.opcode.kind == Kind.PREFIXED ? 1 : 0);
+                code.constant(operand);
+                code.invokeCpu("executeDecoded", "(IZI)V");
+
+                pc += instr.totalBytes;
+                pendingCycles = 0;
+                synced = true;
+
+                if (!last) {
+                    code.returnIfAborted(pc, 0);
+                }
+            }
+        }
+
+        if (!synced) {
+            code.advance(pc, pendingCycles);
+        }
+        code.op(Code.RETURN);
+
+        return cf.toBytes(code);
+    }
+
+    /**
+     * Emits the bytecode of an instruction that does not change the flow of
+     * the program, or nothing if the interpreter must execute it
+     * @return true if the instruction was emitted
+     */
+    private static boolean emit(Code c, Instruction instr, int operand) {
+        switch (instr.family) {
+        case NOP:
+            return true;
+
+        case LD_R8_R8: {
+            c.cpu(); c.reg(instr.r3); c.loadReg8(instr.r0); c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+        case LD_R8_N8: {
+            c.cpu(); c.reg(instr.r3); c.constant(operand); c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+        case LD_R8_HLR: {
+            c.cpu(); c.reg(instr.r3); c.loadAtHl(); c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+        case LD_A_HLRU: {
+            c.cpu(); c.reg(Reg.A); c.loadAtHl(); c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+            c.incrementHl(instr.hlIncrement);
+        } return true;
+        case LD_A_N8R: {
+            c.cpu(); c.reg(Reg.A); c.cpu(); c.constant(AddressMap.REGS_START + operand); c.invokeCpu("read8", "(I)I");
+            c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+        case LD_A_N16R: {
+            c.cpu(); c.reg(Reg.A); c.cpu(); c.constant(operand); c.invokeCpu("read8", "(I)I");
+            c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+        case LD_A_BCR:
+        case LD_A_DER: {
+            c.cpu(); c.reg(Reg.A); c.cpu(); c.loadReg16(instr.family == Opcode.Family.LD_A_BCR ? Reg16.BC : Reg16.DE);
+            c.invokeCpu("read8", "(I)I"); c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+        case LD_R16SP_N16: {
+            c.cpu(); c.reg16(instr.r16); c.constant(operand); c.invokeCpu("setReg16SP", "(L" + REG16 + ";I)V");
+        } return true;
+
+        case LD_HLR_R8: {
+            c.cpu(); c.loadReg16(Reg16.HL); c.loadReg8(instr.r0); c.invokeCpu("write8", "(II)V");
+        } return true;
+        case LD_HLR_N8: {
+            c.cpu(); c.loadReg16(Reg16.HL); c.constant(operand); c.invokeCpu("write8", "(II)V");
+        } return true;
+        case LD_HLRU_A: {
+            c.cpu(); c.loadReg16(Reg16.HL); c.loadReg8(Reg.A); c.invokeCpu("write8", "(II)V");
+            c.incrementHl(instr.hlIncrement);
+        } return true;
+        case LD_N8R_A: {
+            c.cpu(); c.constant(AddressMap.REGS_START + operand); c.loadReg8(Reg.A); c.invokeCpu("write8", "(II)V");
+        } return true;
+        case LD_N16R_A: {
+            c.cpu(); c.constant(operand); c.loadReg8(Reg.A); c.invokeCpu("write8", "(II)V");
+        } return true;
+        case LD_BCR_A:
+        case LD_DER_A: {
+            c.cpu(); c.loadReg16(instr.family == Opcode.Family.LD_BCR_A ? Reg16.BC : Reg16.DE);
+            c.loadReg8(Reg.A); c.invokeCpu("write8", "(II)V");
+        } return true;
+
+        case INC_R8:
+        case DEC_R8: {
+            boolean inc = instr.family == Opcode.Family.INC_R8;
+            c.cpu(); c.reg(instr.r3); c.cpu(); c.loadReg8(instr.r3); c.invokeCpu(inc ? "inc8" : "dec8", "(I)I");
+            c.invokeCpu("setReg8", "(L" + REG + ";I)V");
+        } return true;
+
+        case ADD_A_R8: case ADD_A_N8: case ADD_A_HLR:
+        case SUB_A_R8: case SUB_A_N8: case SUB_A_HLR: {
+            boolean add = instr.family.name().startsWith("ADD");
+            c.cpu(); c.aluOperand(instr, operand); c.constant(instr.usesCarry ? 1 : 0);
+            c.invokeCpu(add ? "addA" : "subA", "(IZ)V");
+        } return true;
+        case AND_A_R8: case AND_A_N8: case AND_A_HLR:
+        case OR_A_R8: case OR_A_N8: case OR_A_HLR:
+        case XOR_A_R8: case XOR_A_N8: case XOR_A_HLR:
+        case CP_A_R8: case CP_A_N8: case CP_A_HLR: {
+            String name = instr.family.name();
+            c.cpu(); c.aluOperand(instr, operand);
+            c.invokeCpu(name.substring(0, name.indexOf('_')).toLowerCase() + "A", "(I)V");
+        } return true;
+
+        default:
+            return false;
+        }
+    }
+
+    private static boolean writesMemory(Instruction instr) {
+        switch (instr.family) {
+        case LD_HLR_R8: case LD_HLR_N8: case LD_HLRU_A: case LD_N8R_A:
+        case LD_N16R_A: case LD_BCR_A: case LD_DER_A:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static String internalName(Class<?> c) {
+        return c.getName().replace('.', '/');
+    }
+
+
+    /* Bytecode of the run method */
+
+    private static final class Code {
+        static final int ICONST_0 = 0x03;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC_W = 0x13;
+        static final int ALOAD_0 = 0x2A;
+        static final int ALOAD_1 = 0x2B;
+        static final int IADD = 0x60;
+        static final int IFEQ = 0x99;
+        static final int RETURN = 0xB1;
+        static final int GETSTATIC = 0xB2;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESPECIAL = 0xB7;
+
+        private final ClassFile cf;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Integer> branchTargets = new ArrayList<>();
+        private final Map<Integer, Integer> branchOffsets = new HashMap<>();
+
+        Code(ClassFile cf) {
+            this.cf = cf;
+        }
+
+        void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        void u2(int v) {
+            bytes.write(v >>> 8);
+            bytes.write(v);
+        }
+
+        void cpu() {
+            op(ALOAD_1);
+        }
+
+        void constant(int v) {
+            if (0 <= v && v <= 5) {
+                op(ICONST_0 + v);
+            } else if (Byte.MIN_VALUE <= v && v <= Byte.MAX_VALUE) {
+                op(BIPUSH);
+                op(v);
+            } else if (Short.MIN_VALUE <= v && v <= Short.MAX_VALUE) {
+                op(SIPUSH);
+                u2(v);
+            } else {
+                op(LDC_W);
+                u2(cf.integer(v));
+            }
+        }
+
+        void getStatic(String owner, String name) {
+            op(GETSTATIC);
+            u2(cf.member(ClassFile.FIELDREF, owner, name, "L" + owner + ";"));
+        }
+
+        void reg(Reg r) {
+            getStatic(REG, r.name());
+        }
+
+        void reg16(Reg16 r) {
+            getStatic(REG16, r.name());
+        }
+
+        void invokeCpu(String name, String descriptor) {
+            op(INVOKEVIRTUAL);
+            u2(cf.member(ClassFile.METHODREF, CPU, name, descriptor));
+        }
+
+        void loadReg8(Reg r) {
+            cpu(); reg(r); invokeCpu("reg8", "(L" + REG + ";)I");
+        }
+
+        void loadReg16(Reg16 r) {
+            cpu(); reg16(r); invokeCpu("reg16", "(L" + REG16 + ";)I");
+        }
+
+        void loadAtHl() {
+            cpu(); loadReg16(Reg16.HL); invokeCpu("read8", "(I)I");
+        }
+
+        void incrementHl(int increment) {
+            cpu(); reg16(Reg16.HL); loadReg16(Reg16.HL); constant(increment); op(IADD);
+            invokeCpu("setReg16", "(L" + REG16 + ";I)V");
+        }
+
+        void aluOperand(Instruction instr, int operand) {
+            String name = instr.family.name();
+
+            if (name.endsWith("_R8")) {
+                loadReg8(instr.r0);
+            } else if (name.endsWith("_N8")) {
+                constant(operand);
+            } else {
+                loadAtHl();
+            }
+        }
+
+        /**
+         * Sets PC to the given address and adds the given cycles to the cycle count
+         */
+        void advance(int pc, int cycles) {
+            cpu(); constant(pc); constant(cycles); invokeCpu("advance", "(II)V");
+        }
+
+        /**
+         * Returns from the block, at the given address, if the last
+         * instruction aborted it
+         */
+        void returnIfAborted(int pc, int pendingCycles) {
+            cpu();
+            invokeCpu("isBlockAborted", "()Z");
+
+            int branch = bytes.size();
+            op(IFEQ);
+            u2(0);
+
+            if (pendingCycles > 0) { // otherwise the interpreter already updated them
+                advance(pc, pendingCycles);
+            }
+            op(RETURN);
+
+            int target = bytes.size();
+            branchTargets.add(target);
+            branchOffsets.put(branch + 1, target - branch);
+        }
+
+        byte[] toBytes() {
+            byte[] code = bytes.toByteArray();
+            for (Map.Entry<Integer, Integer> e : branchOffsets.entrySet()) {
+                code[e.getKey()] = (byte) (e.getValue() >>> 8);
+                code[e.getKey() + 1] = (byte) (e.getValue().intValue());
+            }
+            return code;
+        }
+
+        /**
+         * The stack map of the method: the locals declared at its start and
+         * an empty stack at every branch target
+         */
+        byte[] stackMap() {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            int previous = -1;
+
+            for (int target : branchTargets) {
+                int delta = target - previous - 1;
+                if (delta < 64) {
+                    frames.write(delta);
+                } else {
+                    frames.write(251);
+                    frames.write(delta >>> 8);
+                    frames.write(delta);
+                }
+                previous = target;
+            }
+
+            byte[] entries = frames.toByteArray();
+            byte[] map = new byte[entries.length + 2];
+            map[0] = (byte) (branchTargets.size() >>> 8);
+            map[1] = (byte) branchTargets.size();
+            System.arraycopy(entries, 0, map, 2, entries.length);
+            return map;
+        }
+    }
+
+
+    /* Class file */
+
+    private static final class ClassFile {
+        static final int UTF8 = 1;
+        static final int INTEGER = 3;
+        static final int CLASS = 7;
+        static final int FIELDREF = 9;
+        static final int METHODREF = 10;
+        static final int NAME_AND_TYPE = 12;
+
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private final String name;
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolOut = new DataOutputStream(pool);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int poolCount = 1;
+
+        ClassFile(String name) {
+            this.name = name;
+        }
+
+        int utf8(String s) {
+            return entry("U" + s, out -> {
+                out.writeByte(UTF8);
+                out.writeUTF(s);
+            });
+        }
+
+        int integer(int v) {
+            return entry("I" + v, out -> {
+                out.writeByte(INTEGER);
+                out.writeInt(v);
+            });
+        }
+
+        int classRef(String internalName) {
+            int nameIndex = utf8(internalName);
+            return entry("C" + internalName, out -> {
+                out.writeByte(CLASS);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int member(int tag, String owner, String name, String descriptor) {
+            int classIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + " " + descriptor, out -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry(tag + owner + "." + name + " " + descriptor, out -> {
+                out.writeByte(tag);
+                out.writeShort(classIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int entry(String key, PoolWriter writer) {
+            Integer index = entries.get(key);
+
+            if (index == null) {
+                try {
+                    writer.write(poolOut);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                index = poolCount++;
+                entries.put(key, index);
+            }
+
+            return index;
+        }
+
+        /**
+         * Assembles a final class implementing CompiledBlock, with a public
+         * constructor and the given body for its run method
+         */
+        byte[] toBytes(Code run) {
+            int thisIndex = classRef(name);
+            int superIndex = classRef("java/lang/Object");
+            int interfaceIndex = classRef(COMPILED_BLOCK);
+            int initName = utf8("<init>");
+            int initDescriptor = utf8("()V");
+            int objectInit = member(METHODREF, "java/lang/Object", "<init>", "()V");
+            int runName = utf8("run");
+            int runDescriptor = utf8("(L" + CPU + ";)V");
+            int codeName = utf8("Code");
+            int stackMapName = utf8("StackMapTable");
+
+            byte[] initCode = { Code.ALOAD_0, (byte) Code.INVOKESPECIAL, (byte) (objectInit >>> 8), (byte) objectInit, (byte) Code.RETURN };
+            byte[] runCode = run.toBytes();
+            byte[] stackMap = run.stackMap();
+
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(CLASS_FILE_VERSION);
+                out.writeShort(poolCount);
+                pool.writeTo(out);
+
+                out.writeShort(ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisIndex);
+                out.writeShort(superIndex);
+                out.writeShort(1);
+                out.writeShort(interfaceIndex);
+                out.writeShort(0); // fields
+
+                out.writeShort(2); // methods
+                out.writeShort(ACC_PUBLIC);
+                out.writeShort(initName);
+                out.writeShort(initDescriptor);
+                out.writeShort(1);
+                writeCode(out, codeName, 1, 1, initCode, -1, null);
+
+                out.writeShort(ACC_PUBLIC);
+                out.writeShort(runName);
+                out.writeShort(runDescriptor);
+                out.writeShort(1);
+                writeCode(out, codeName, MAX_STACK, MAX_LOCALS, runCode, stackMapName, stackMap);
+
+                out.writeShort(0); // attributes
+
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void writeCode(DataOutputStream out, int codeName, int maxStack, int maxLocals,
+                byte[] code, int stackMapName, byte[] stackMap) throws IOException {
+            boolean hasStackMap = stackMap != null && stackMap.length > 2;
+            int attributesLength = hasStackMap ? 6 + stackMap.length : 0;
+
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length + attributesLength);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+
+            if (hasStackMap) {
+                out.writeShort(1);
+                out.writeShort(stackMapName);
+                out.writeInt(stackMap.length);
+                out.write(stackMap);
+            } else {
+                out.writeShort(0);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
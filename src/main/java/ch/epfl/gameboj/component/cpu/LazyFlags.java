@@ -0,0 +1,124 @@
+package ch.epfl.gameboj.component.cpu;
+
+/**
+ * The last flag-producing operation of the cpu, kept with its operands so
+ * that the flags are only computed when an instruction reads them.
+ * The flags are computed exactly as in {@link Alu}
+ *
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+final class LazyFlags {
+
+    private static enum Op {
+        NONE, ADD, SUB, AND, OR_XOR, INC, DEC
+    }
+
+    private Op op = Op.NONE;
+    private int l;
+    private int r;
+    private int c;
+
+    /**
+     * @return true if an operation is recorded, false if the flags register is up to date
+     */
+    boolean isPending() {
+        return op != Op.NONE;
+    }
+
+    /**
+     * Forgets the recorded operation, when the flags register is written directly
+     */
+    void clear() {
+        op = Op.NONE;
+    }
+
+    /**
+     * Records an 8-bit addition l + r + c
+     * @param l : 8 bits
+     * @param r : 8 bits
+     * @param c : initial carry, 0 or 1
+     */
+    void add(int l, int r, int c) {
+        record(Op.ADD, l, r, c);
+    }
+
+    /**
+     * Records an 8-bit subtraction (or comparison) l - r - c
+     * @param l : 8 bits
+     * @param r : 8 bits
+     * @param c : initial borrow, 0 or 1
+     */
+    void sub(int l, int r, int c) {
+        record(Op.SUB, l, r, c);
+    }
+
+    /**
+     * Records a bitwise and
+     * @param result : the 8-bit result
+     */
+    void and(int result) {
+        record(Op.AND, result, 0, 0);
+    }
+
+    /**
+     * Records a bitwise or or xor
+     * @param result : the 8-bit result
+     */
+    void orXor(int result) {
+        record(Op.OR_XOR, result, 0, 0);
+    }
+
+    /**
+     * Records an 8-bit increment, which keeps the carry flag
+     * @param result : the incremented 8-bit value
+     * @param carry : the carry flag before the increment
+     */
+    void inc(int result, boolean carry) {
+        record(Op.INC, result, 0, carry ? 1 : 0);
+    }
+
+    /**
+     * Records an 8-bit decrement, which keeps the carry flag
+     * @param result : the decremented 8-bit value
+     * @param carry : the carry flag before the decrement
+     */
+    void dec(int result, boolean carry) {
+        record(Op.DEC, result, 0, carry ? 1 : 0);
+    }
+
+    /**
+     * Computes the flags of the recorded operation
+     * @throws IllegalStateException if no operation is recorded
+     * @return the flags, in the format of the F register (ZNHC0000)
+     */
+    int flags() {
+        switch (op) {
+        case ADD: {
+            int result = l + r + c;
+            return Alu.maskZNHC((result & 0xFF) == 0, false, (l & 0xF) + (r & 0xF) + c > 0xF, result > 0xFF);
+        }
+        case SUB: {
+            int result = l - r - c;
+            return Alu.maskZNHC((result & 0xFF) == 0, true, (l & 0xF) < (r & 0xF) + c, result < 0);
+        }
+        case AND:
+            return Alu.maskZNHC(l == 0, false, true, false);
+        case OR_XOR:
+            return Alu.maskZNHC(l == 0, false, false, false);
+        case INC:
+            return Alu.maskZNHC(l == 0, false, (l & 0xF) == 0, c == 1);
+        case DEC:
+            return Alu.maskZNHC(l == 0, true, (l & 0xF) == 0xF, c == 1);
+        default:
+            throw new IllegalStateException("No pending flags");
+        }
+    }
+
+    private void record(Op op, int l, int r, int c) {
+        this.op = op;
+        this.l = l;
+        this.r = r;
+        this.c = c;
+    }
+}
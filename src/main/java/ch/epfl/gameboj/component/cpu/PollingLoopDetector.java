@@ -0,0 +1,83 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.AddressMap;
+
+/**
+ * Detects the polling loops of the cpu. A loop is polling when an iteration
+ * starts and ends at the same address with the same registers, without any
+ * write to the bus nor any read of a register that changes by itself (timer
+ * and sound). Such an iteration can only behave differently when another
+ * component changes the state of the gameboy, so it can be skipped until then
+ *
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+final class PollingLoopDetector {
+
+    private int head = -1;
+    private long headCycle = 0;
+    private long registers = 0;
+    private int sp = 0;
+    private boolean ime = false;
+    private boolean unchanged = false;
+    private int loopCycles = 0;
+
+    /**
+     * Records a write to the bus, which ends the current iteration's chance of being idle
+     */
+    void wrote() {
+        unchanged = false;
+    }
+
+    /**
+     * Records a read of the bus
+     * @param address : the address read, 16 bits
+     */
+    void read(int address) {
+        if (address >= AddressMap.REG_DIV && isVolatile(address)) {
+            unchanged = false;
+        }
+    }
+
+    private static boolean isVolatile(int address) {
+        return address <= AddressMap.REG_TAC
+                || (address >= AddressMap.REGS_SOUND_START && address < AddressMap.WAVE_RAM_END);
+    }
+
+    /**
+     * Records a jump backwards, to what may be the head of a loop
+     * @param pc : the address jumped to
+     * @param cycle : the cycle at which the cpu executes the instruction at pc
+     * @param registers : the registers AF, BC, DE and HL, packed in that order
+     * @param sp : the stack pointer
+     * @param ime : the interrupt master enable flag
+     */
+    void jumpedBack(int pc, long cycle, long registers, int sp, boolean ime) {
+        boolean same = pc == head && registers == this.registers && sp == this.sp && ime == this.ime;
+        loopCycles = same && unchanged ? (int) (cycle - headCycle) : 0;
+
+        head = pc;
+        headCycle = cycle;
+        this.registers = registers;
+        this.sp = sp;
+        this.ime = ime;
+        unchanged = true;
+    }
+
+    /**
+     * @param cycle : the current cycle
+     * @return the number of cycles of an iteration of the polling loop whose
+     * head the cpu executes at the given cycle, 0 if there is no such loop
+     */
+    int loopCycles(long cycle) {
+        return cycle == headCycle ? loopCycles : 0;
+    }
+
+    /**
+     * Shifts the start of the current iteration, when iterations are skipped
+     * @param cycles : the number of skipped cycles
+     */
+    void skip(long cycles) {
+        headCycle += cycles;
+    }
+}
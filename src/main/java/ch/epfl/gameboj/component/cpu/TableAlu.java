@@ -0,0 +1,163 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Table-driven version of the 8-bit operations of {@link Alu}. The packed
+ * result and flags of every combination of operands are computed by Alu once,
+ * when an operation is first used, then looked up. Invalid arguments are
+ * passed on to Alu, which throws the same exceptions
+ *
+ * @author Sylvain Kuchen (282380)
+ * @author Luca Bataillard (282152)
+ */
+public final class TableAlu {
+
+    private static final int VALUES_8 = 1 << 8;
+
+    private TableAlu() {}
+
+    private static final class AddSub {
+        static final int[] ADD = new int[2 * VALUES_8 * VALUES_8];
+        static final int[] SUB = new int[2 * VALUES_8 * VALUES_8];
+
+        static {
+            for (int c = 0; c < 2; c++) {
+                for (int l = 0; l < VALUES_8; l++) {
+                    for (int r = 0; r < VALUES_8; r++) {
+                        ADD[index(l, r, c == 1)] = Alu.add(l, r, c == 1);
+                        SUB[index(l, r, c == 1)] = Alu.sub(l, r, c == 1);
+                    }
+                }
+            }
+        }
+
+        static int index(int l, int r, boolean c) {
+            return (c ? VALUES_8 * VALUES_8 : 0) | (l << 8) | r;
+        }
+    }
+
+    private static final class BcdAdjust {
+        static final int[] TABLE = new int[8 * VALUES_8];
+
+        static {
+            for (int flags = 0; flags < 8; flags++) {
+                for (int v = 0; v < VALUES_8; v++) {
+                    TABLE[(flags << 8) | v] = Alu.bcdAdjust(v, (flags & 0b100) != 0, (flags & 0b010) != 0, (flags & 0b001) != 0);
+                }
+            }
+        }
+    }
+
+    private static final class ShiftRotate {
+        static final int[] SHIFT_LEFT = new int[VALUES_8];
+        static final int[] SHIFT_RIGHT_A = new int[VALUES_8];
+        static final int[] SHIFT_RIGHT_L = new int[VALUES_8];
+        static final int[] SWAP = new int[VALUES_8];
+        static final int[] ROTATE = new int[2 * VALUES_8];
+        static final int[] ROTATE_CARRY = new int[4 * VALUES_8];
+
+        static {
+            for (int v = 0; v < VALUES_8; v++) {
+                SHIFT_LEFT[v] = Alu.shiftLeft(v);
+                SHIFT_RIGHT_A[v] = Alu.shiftRightA(v);
+                SHIFT_RIGHT_L[v] = Alu.shiftRightL(v);
+                SWAP[v] = Alu.swap(v);
+
+                for (RotDir d : RotDir.values()) {
+                    ROTATE[(d.ordinal() << 8) | v] = Alu.rotate(d, v);
+                    ROTATE_CARRY[(d.ordinal() << 9) | v] = Alu.rotate(d, v, false);
+                    ROTATE_CARRY[(d.ordinal() << 9) | VALUES_8 | v] = Alu.rotate(d, v, true);
+                }
+            }
+        }
+    }
+
+    private static boolean are8Bits(int v1, int v2) {
+        return ((v1 | v2) & ~0xFF) == 0;
+    }
+
+    /**
+     * Same as {@link Alu#add(int, int, boolean)}
+     */
+    public static int add(int l, int r, boolean c0) {
+        return are8Bits(l, r) ? AddSub.ADD[AddSub.index(l, r, c0)] : Alu.add(l, r, c0);
+    }
+
+    /**
+     * Same as {@link Alu#add(int, int)}
+     */
+    public static int add(int l, int r) {
+        return add(l, r, false);
+    }
+
+    /**
+     * Same as {@link Alu#sub(int, int, boolean)}
+     */
+    public static int sub(int l, int r, boolean b0) {
+        return are8Bits(l, r) ? AddSub.SUB[AddSub.index(l, r, b0)] : Alu.sub(l, r, b0);
+    }
+
+    /**
+     * Same as {@link Alu#sub(int, int)}
+     */
+    public static int sub(int l, int r) {
+        return sub(l, r, false);
+    }
+
+    /**
+     * Same as {@link Alu#bcdAdjust(int, boolean, boolean, boolean)}
+     */
+    public static int bcdAdjust(int v, boolean n, boolean h, boolean c) {
+        if (!are8Bits(v, 0)) {
+            return Alu.bcdAdjust(v, n, h, c);
+        }
+
+        int flags = (n ? 0b100 : 0) | (h ? 0b010 : 0) | (c ? 0b001 : 0);
+        return BcdAdjust.TABLE[(flags << 8) | v];
+    }
+
+    /**
+     * Same as {@link Alu#shiftLeft(int)}
+     */
+    public static int shiftLeft(int v) {
+        return are8Bits(v, 0) ? ShiftRotate.SHIFT_LEFT[v] : Alu.shiftLeft(v);
+    }
+
+    /**
+     * Same as {@link Alu#shiftRightA(int)}
+     */
+    public static int shiftRightA(int v) {
+        return are8Bits(v, 0) ? ShiftRotate.SHIFT_RIGHT_A[v] : Alu.shiftRightA(v);
+    }
+
+    /**
+     * Same as {@link Alu#shiftRightL(int)}
+     */
+    public static int shiftRightL(int v) {
+        return are8Bits(v, 0) ? ShiftRotate.SHIFT_RIGHT_L[v] : Alu.shiftRightL(v);
+    }
+
+    /**
+     * Same as {@link Alu#rotate(RotDir, int)}
+     */
+    public static int rotate(RotDir d, int v) {
+        return are8Bits(v, 0) ? ShiftRotate.ROTATE[(d.ordinal() << 8) | v] : Alu.rotate(d, v);
+    }
+
+    /**
+     * Same as {@link Alu#rotate(RotDir, int, boolean)}
+     */
+    public static int rotate(RotDir d, int v, boolean c) {
+        return are8Bits(v, 0)
+                ? ShiftRotate.ROTATE_CARRY[(d.ordinal() << 9) | (c ? VALUES_8 : 0) | v]
+                : Alu.rotate(d, v, c);
+    }
+
+    /**
+     * Same as {@link Alu#swap(int)}
+     */
+    public static int swap(int v) {
+        return are8Bits(v, 0) ? ShiftRotate.SWAP[v] : Alu.swap(v);
+    }
+}
@@ -206,6 +206,21 @@ public final class LcdController implements Component, Clocked {
         }
     }
 
+    /**
+     * Gives the next cycle at which the controller changes state, for
+     * instance by changing mode or raising an interrupt, provided nothing is
+     * written to it in the meantime. Cycling it before does nothing
+     * @param cycle : the next cycle the controller will be cycled at
+     * @return that cycle, Long.MAX_VALUE if the screen is off
+     */
+    public long nextEventCycle(long cycle) {
+        if (quickCopyEnabled || isWokenUp()) {
+            return cycle;
+        }
+        
+        return Math.max(cycle, nextNonIdleCycle);
+    }
+
     private void reallyCycle() {
         updateLineIndex();
         setMode(nextMode);
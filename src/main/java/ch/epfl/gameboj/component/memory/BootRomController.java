@@ -5,6 +5,7 @@ import java.util.Objects;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Banked;
 import ch.epfl.gameboj.component.Component;
 
 /**
@@ -13,7 +14,7 @@ import ch.epfl.gameboj.component.Component;
  *  @author Sylvain Kuchen (282380)
  *  @author Luca Bataillard (282152)
  */
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, Banked {
     
     private final Cartridge cartridge;
     private final Rom bootRom;
@@ -57,4 +58,21 @@ public final class BootRomController implements Component {
         
         cartridge.write(address, data);
     }
+    
+    /**
+     * Gives the cartridge bank mapped at given address, or -1 while the boot rom covers it
+     * @param address : 16 bits
+     * @throws IllegalArgumentException if address not 16 bits
+     * @return the index of the bank
+     */
+    @Override
+    public int bankAt(int address) {
+        Preconditions.checkBits16(address);
+        
+        if (bootRomEnabled && (address >= AddressMap.BOOT_ROM_START && address < AddressMap.BOOT_ROM_END)) {
+            return -1;
+        }
+        
+        return cartridge.bankAt(address);
+    }
 }
@@ -159,4 +159,62 @@ public final class TimerTest implements ComponentTest {
             assertEquals(t.read(0xFF05), tma);
         }
     }
+    
+    @Test
+    void skipGivesSameStateAsCycling() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int tac = 0b100 | rng.nextInt(4);
+            int tima = rng.nextInt(0x100);
+            int tma = rng.nextInt(0x100);
+            int start = rng.nextInt(0x10000);
+            int cycles = rng.nextInt(0x2000);
+            
+            Cpu cycledCpu = new Cpu(), skippedCpu = new Cpu();
+            Timer cycled = new Timer(cycledCpu), skipped = new Timer(skippedCpu);
+            for (Timer t : new Timer[] { cycled, skipped }) {
+                for (int c = 0; c < start; ++c)
+                    t.cycle(c);
+                t.write(0xFF07, tac);
+                t.write(0xFF05, tima);
+                t.write(0xFF06, tma);
+            }
+            
+            for (int c = 0; c < cycles; ++c)
+                cycled.cycle(start + c);
+            skipped.skip(cycles);
+            
+            assertEquals(cycled.read(0xFF04), skipped.read(0xFF04));
+            assertEquals(cycled.read(0xFF05), skipped.read(0xFF05));
+            assertEquals(cycledCpu.read(0xFF0F), skippedCpu.read(0xFF0F));
+        }
+    }
+    
+    @Test
+    void nextInterruptCycleIsTheCycleDuringWhichTheInterruptIsRequested() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            Cpu cpu = new Cpu();
+            Timer t = new Timer(cpu);
+            int start = rng.nextInt(0x1000);
+            for (int c = 0; c < start; ++c)
+                t.cycle(c);
+            t.write(0xFF07, 0b100 | rng.nextInt(4));
+            t.write(0xFF05, rng.nextInt(0x100));
+            
+            long expected = t.nextInterruptCycle(start);
+            long c = start;
+            while (cpu.read(0xFF0F) == 0)
+                t.cycle(c++);
+            
+            assertEquals(expected, c - 1);
+        }
+    }
+    
+    @Test
+    void nextInterruptCycleIsInfiniteWhenTimerIsStopped() {
+        Timer t = newComponent();
+        t.write(0xFF07, 0b011);
+        assertEquals(Long.MAX_VALUE, t.nextInterruptCycle(0));
+    }
 }
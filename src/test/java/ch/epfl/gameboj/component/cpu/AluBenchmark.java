@@ -0,0 +1,71 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Compares the throughput of {@link Alu} and {@link TableAlu} on random
+ * operands. Not a unit test: run its main method, results are printed in
+ * nanoseconds per operation
+ */
+public final class AluBenchmark {
+
+    private static final int OPERANDS = 1 << 16;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    private static final int[] values = new int[OPERANDS];
+
+    private interface Op {
+        int apply(int v, int i);
+    }
+
+    public static void main(String[] args) {
+        Random rng = new Random(2018);
+        for (int i = 0; i < OPERANDS; i++) {
+            values[i] = rng.nextInt(1 << 8);
+        }
+
+        compare("add", (v, i) -> Alu.add(v, i & 0xFF, (i & 0x100) != 0), (v, i) -> TableAlu.add(v, i & 0xFF, (i & 0x100) != 0));
+        compare("sub", (v, i) -> Alu.sub(v, i & 0xFF, (i & 0x100) != 0), (v, i) -> TableAlu.sub(v, i & 0xFF, (i & 0x100) != 0));
+        compare("bcdAdjust", (v, i) -> Alu.bcdAdjust(v, (i & 1) != 0, (i & 2) != 0, (i & 4) != 0),
+                (v, i) -> TableAlu.bcdAdjust(v, (i & 1) != 0, (i & 2) != 0, (i & 4) != 0));
+        compare("rotate", (v, i) -> Alu.rotate(RotDir.LEFT, v, (i & 1) != 0), (v, i) -> TableAlu.rotate(RotDir.LEFT, v, (i & 1) != 0));
+        compare("swap", unary(Alu::swap), unary(TableAlu::swap));
+        compare("shiftRightA", unary(Alu::shiftRightA), unary(TableAlu::shiftRightA));
+    }
+
+    private static Op unary(IntUnaryOperator o) {
+        return (v, i) -> o.applyAsInt(v);
+    }
+
+    private static void compare(String name, Op alu, Op tableAlu) {
+        run(alu, WARMUP_ROUNDS);
+        run(tableAlu, WARMUP_ROUNDS);
+
+        double aluTime = run(alu, ROUNDS);
+        double tableTime = run(tableAlu, ROUNDS);
+
+        System.out.printf("%-12s Alu %6.2f ns   TableAlu %6.2f ns%n", name, aluTime, tableTime);
+    }
+
+    private static double run(Op op, int rounds) {
+        int sink = 0;
+        long start = System.nanoTime();
+
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < OPERANDS; i++) {
+                sink += op.apply(values[i], i + round);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+
+        return (double) elapsed / ((long) rounds * OPERANDS);
+    }
+}
@@ -2268,5 +2268,128 @@ class CpuTest {
         
         assertEquals(0b0000_0000, cpu._testGetPcSpAFBCDEHL()[3]);
     }
+    
+    /* Tests for block cache execution */
+    
+    @Test
+    void blockCacheGivesSameResultAsInterpreter() {
+        int[] program = {
+                Opcode.LD_B_N8.encoding,        // 0: LD B 5
+                0x05,                           // 1:
+                Opcode.INC_A.encoding,          // 2: INC A
+                Opcode.ADD_A_A.encoding,        // 3: ADD A A
+                Opcode.DEC_B.encoding,          // 4: DEC B
+                Opcode.JR_NZ_E8.encoding,       // 5: JR NZ -5
+                0xFB,                           // 6:
+                Opcode.LD_H_A.encoding,         // 7: LD H A
+                Opcode.JR_E8.encoding,          // 8: JR -2
+                0xFE                            // 9:
+        };
+        
+        Cpu interpreted = newCpu(program);
+        Cpu cached = newCpu(program);
+        cached.setExecutionMode(Cpu.ExecutionMode.BLOCK_CACHE);
+        
+        runCpu(interpreted, 200);
+        runCpu(cached, 200);
+        
+        assertArrayEquals(interpreted._testGetPcSpAFBCDEHL(), cached._testGetPcSpAFBCDEHL());
+    }
+    
+    @Test
+    void blockCacheSeesSelfModifyingCode() {
+        int[] program = {
+                Opcode.LD_A_N8.encoding,        // 0: LD A INC_B
+                Opcode.INC_B.encoding,          // 1:
+                Opcode.CALL_N16.encoding,       // 2: CALL 0x0010
+                0x10,                           // 3:
+                0x00,                           // 4:
+                Opcode.LD_N16R_A.encoding,      // 5: LD [0x0010] A
+                0x10,                           // 6:
+                0x00,                           // 7:
+                Opcode.CALL_N16.encoding,       // 8: CALL 0x0010
+                0x10,                           // 9:
+                0x00,                           // 10:
+                Opcode.JR_E8.encoding,          // 11: JR -2
+                0xFE,                           // 12:
+                Opcode.NOP.encoding,            // 13:
+                Opcode.NOP.encoding,            // 14:
+                Opcode.NOP.encoding,            // 15:
+                Opcode.NOP.encoding,            // 16: NOP, then INC B
+                Opcode.RET.encoding             // 17: RET
+        };
+        
+        Cpu cpu = newCpu(program);
+        cpu.setExecutionMode(Cpu.ExecutionMode.BLOCK_CACHE);
+        runCpu(cpu, 100);
+        
+        assertEquals(0x01, cpu._testGetPcSpAFBCDEHL()[4]);
+    }
+    
+    @Test
+    void jitGivesSameResultAsInterpreter() {
+        int[] program = {
+                Opcode.LD_HL_N16.encoding,      // 0: LD HL 0xFF80
+                0x80,                           // 1:
+                0xFF,                           // 2:
+                Opcode.LD_B_N8.encoding,        // 3: LD B 0
+                0x00,                           // 4:
+                Opcode.LD_HLR_A.encoding,       // 5: LD [HL] A
+                Opcode.ADC_A_B.encoding,        // 6: ADC A B
+                Opcode.XOR_A_N8.encoding,       // 7: XOR A 0x5A
+                0x5A,                           // 8:
+                Opcode.INC_L.encoding,          // 9: INC L
+                0xCB,                           // 10: RES 6 L
+                Opcode.RES_6_L.encoding,        // 11:
+                Opcode.DEC_B.encoding,          // 12: DEC B
+                Opcode.JR_NZ_E8.encoding,       // 13: JR NZ -10
+                0xF6,                           // 14:
+                Opcode.LD_A_HLR.encoding,       // 15: LD A [HL]
+                Opcode.JR_E8.encoding,          // 16: JR -2
+                0xFE                            // 17:
+        };
+        
+        Cpu interpreted = newCpu(program);
+        Cpu compiled = newCpu(program);
+        compiled.setExecutionMode(Cpu.ExecutionMode.JIT);
+        
+        runCpu(interpreted, 4000);
+        runCpu(compiled, 4000);
+        
+        assertArrayEquals(interpreted._testGetPcSpAFBCDEHL(), compiled._testGetPcSpAFBCDEHL());
+    }
+    
+    @Test
+    void jitFallsBackOnSelfModifyingCode() {
+        int[] program = new int[0x22];
+        int[] start = {
+                Opcode.LD_C_N8.encoding,        // 0: LD C 0
+                0x00,                           // 1:
+                Opcode.CALL_N16.encoding,       // 2: CALL 0x0020
+                0x20,                           // 3:
+                0x00,                           // 4:
+                Opcode.DEC_C.encoding,          // 5: DEC C
+                Opcode.JR_NZ_E8.encoding,       // 6: JR NZ -6
+                0xFA,                           // 7:
+                Opcode.LD_A_N8.encoding,        // 8: LD A INC_B
+                Opcode.INC_B.encoding,          // 9:
+                Opcode.LD_N16R_A.encoding,      // 10: LD [0x0020] A
+                0x20,                           // 11:
+                0x00,                           // 12:
+                Opcode.CALL_N16.encoding,       // 13: CALL 0x0020
+                0x20,                           // 14:
+                0x00,                           // 15:
+                Opcode.JR_E8.encoding,          // 16: JR -2
+                0xFE                            // 17:
+        };
+        System.arraycopy(start, 0, program, 0, start.length);
+        program[0x20] = Opcode.NOP.encoding;    // NOP, then INC B
+        program[0x21] = Opcode.RET.encoding;
+        
+        Cpu cpu = newCpu(program);
+        cpu.setExecutionMode(Cpu.ExecutionMode.JIT);
+        runCpu(cpu, 6000);
+        
+        assertEquals(0x01, cpu._testGetPcSpAFBCDEHL()[4]);
+    }
 }
-
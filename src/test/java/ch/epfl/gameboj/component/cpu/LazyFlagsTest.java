@@ -0,0 +1,79 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LazyFlagsTest {
+
+    @Test
+    void addAndSubGiveSameFlagsAsAlu() {
+        LazyFlags flags = new LazyFlags();
+
+        for (int l = 0; l <= 0xFF; l++) {
+            for (int r = 0; r <= 0xFF; r++) {
+                for (int c = 0; c <= 1; c++) {
+                    flags.add(l, r, c);
+                    assertEquals(Alu.unpackFlags(Alu.add(l, r, c == 1)), flags.flags());
+
+                    flags.sub(l, r, c);
+                    assertEquals(Alu.unpackFlags(Alu.sub(l, r, c == 1)), flags.flags());
+                }
+            }
+        }
+    }
+
+    @Test
+    void logicalOperationsGiveSameFlagsAsAlu() {
+        LazyFlags flags = new LazyFlags();
+
+        for (int l = 0; l <= 0xFF; l++) {
+            for (int r = 0; r <= 0xFF; r += 0x11) {
+                flags.and(l & r);
+                assertEquals(Alu.unpackFlags(Alu.and(l, r)), flags.flags());
+
+                flags.orXor(l | r);
+                assertEquals(Alu.unpackFlags(Alu.or(l, r)), flags.flags());
+
+                flags.orXor(l ^ r);
+                assertEquals(Alu.unpackFlags(Alu.xor(l, r)), flags.flags());
+            }
+        }
+    }
+
+    @Test
+    void incAndDecGiveSameFlagsAsAluAndKeepCarry() {
+        LazyFlags flags = new LazyFlags();
+        int carry = Alu.Flag.C.mask();
+
+        for (int v = 0; v <= 0xFF; v++) {
+            int inc = Alu.add(v, 1);
+            flags.inc(Alu.unpackValue(inc), true);
+            assertEquals(Alu.unpackFlags(inc) | carry, flags.flags());
+            flags.inc(Alu.unpackValue(inc), false);
+            assertEquals(Alu.unpackFlags(inc) & ~carry, flags.flags());
+
+            int dec = Alu.sub(v, 1);
+            flags.dec(Alu.unpackValue(dec), true);
+            assertEquals(Alu.unpackFlags(dec) | carry, flags.flags());
+            flags.dec(Alu.unpackValue(dec), false);
+            assertEquals(Alu.unpackFlags(dec) & ~carry, flags.flags());
+        }
+    }
+
+    @Test
+    void clearForgetsTheOperation() {
+        LazyFlags flags = new LazyFlags();
+        assertFalse(flags.isPending());
+
+        flags.add(1, 2, 0);
+        assertTrue(flags.isPending());
+
+        flags.clear();
+        assertFalse(flags.isPending());
+        assertThrows(IllegalStateException.class, () -> flags.flags());
+    }
+}
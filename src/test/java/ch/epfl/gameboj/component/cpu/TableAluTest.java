@@ -0,0 +1,61 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+class TableAluTest {
+
+    @Test
+    void addAndSubProduceSameResultsAsAlu() {
+        for (int l = 0; l <= 0xFF; l++) {
+            for (int r = 0; r <= 0xFF; r++) {
+                assertEquals(Alu.add(l, r), TableAlu.add(l, r));
+                assertEquals(Alu.add(l, r, true), TableAlu.add(l, r, true));
+                assertEquals(Alu.sub(l, r), TableAlu.sub(l, r));
+                assertEquals(Alu.sub(l, r, true), TableAlu.sub(l, r, true));
+            }
+        }
+    }
+
+    @Test
+    void bcdAdjustProducesSameResultsAsAlu() {
+        for (int v = 0; v <= 0xFF; v++) {
+            for (int flags = 0; flags < 8; flags++) {
+                boolean n = (flags & 0b100) != 0, h = (flags & 0b010) != 0, c = (flags & 0b001) != 0;
+                assertEquals(Alu.bcdAdjust(v, n, h, c), TableAlu.bcdAdjust(v, n, h, c));
+            }
+        }
+    }
+
+    @Test
+    void shiftsRotatesAndSwapProduceSameResultsAsAlu() {
+        for (int v = 0; v <= 0xFF; v++) {
+            assertEquals(Alu.shiftLeft(v), TableAlu.shiftLeft(v));
+            assertEquals(Alu.shiftRightA(v), TableAlu.shiftRightA(v));
+            assertEquals(Alu.shiftRightL(v), TableAlu.shiftRightL(v));
+            assertEquals(Alu.swap(v), TableAlu.swap(v));
+
+            for (RotDir d : RotDir.values()) {
+                assertEquals(Alu.rotate(d, v), TableAlu.rotate(d, v));
+                assertEquals(Alu.rotate(d, v, false), TableAlu.rotate(d, v, false));
+                assertEquals(Alu.rotate(d, v, true), TableAlu.rotate(d, v, true));
+            }
+        }
+    }
+
+    @Test
+    void invalidValuesFailLikeAlu() {
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.add(0x100, 0));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.add(0, -1, true));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.sub(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.bcdAdjust(0x100, false, false, false));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.shiftLeft(0x100));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.rotate(RotDir.LEFT, -1));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.rotate(RotDir.RIGHT, 0x100, true));
+        assertThrows(IllegalArgumentException.class, () -> TableAlu.swap(0x1FF));
+    }
+}